@@ -2,9 +2,14 @@ package org.zakariafarih.multitenancyautoconfig;
 
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.SmartInitializingSingleton;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.*;
@@ -21,7 +26,11 @@ import javax.sql.DataSource;
         MultitenancyPoolProperties.class,
         MultitenancyFlywayProperties.class,
         MultitenancySecurityProps.class,
-        MultitenancyMonitoringProperties.class
+        MultitenancyMonitoringProperties.class,
+        MultitenancyBootstrapProperties.class,
+        MultitenancyResolutionProperties.class,
+        MultitenancyRegistryProperties.class,
+        MultitenancyProvisioningProperties.class
 })
 @RequiredArgsConstructor
 @ConfigurationPropertiesScan("org.zakariafarih")   // scans tenants.yml POJOs too
@@ -43,27 +52,72 @@ public class MultitenancyAutoConfiguration {
 
     /* ─────────── Core beans ─────────── */
 
-    @Bean public TenantRegistry tenantRegistry() { return new TenantRegistry(); }
+    @Bean @ConditionalOnMissingBean
+    public TenantDescriptorLoader tenantDescriptorLoader(MultitenancyRegistryProperties registry) {
+        return new TenantDescriptorLoader(registry);
+    }
 
     @Bean @ConditionalOnMissingBean
-    public SchemaGenerator schemaGenerator(MultitenancyFlywayProperties fp) {
-        return new SchemaGenerator(fp);
+    public TenantRegistry tenantRegistry(MultitenancyRegistryProperties registry, TenantDescriptorLoader loader) {
+        var tenants = loader.load();
+        return switch (registry.getType()) {
+            case MAP     -> new MapTenantRegistry(tenants);
+            case COMPACT -> new CompactTenantRegistry(tenants);
+        };
     }
 
-    @Bean @ConditionalOnMissingBean public EMFProvider emfProvider() { return new EMFProvider(); }
+    @Bean @ConditionalOnMissingBean
+    public UnknownTenantGuard unknownTenantGuard(MultitenancyResolutionProperties resolution,
+                                                 ObjectProvider<MeterRegistry> meters) {
+        return new UnknownTenantGuard(resolution, meters.getIfAvailable(SimpleMeterRegistry::new));
+    }
+
+    @Bean @ConditionalOnMissingBean
+    public MigrationLedger migrationLedger() { return new MigrationLedger(); }
+
+    @Bean @ConditionalOnMissingBean
+    public SchemaGenerator schemaGenerator(MultitenancyFlywayProperties fp, MigrationLedger ledger) {
+        return new SchemaGenerator(fp, ledger);
+    }
+
+    @Bean @ConditionalOnMissingBean
+    public PersistenceUnitScanCache persistenceUnitScanCache() { return new PersistenceUnitScanCache(); }
+
+    @Bean @ConditionalOnMissingBean
+    public EMFProvider emfProvider(PersistenceUnitScanCache scanCache, MultitenancyPoolProperties poolProps) {
+        return new EMFProvider(scanCache, poolProps.getMode() != MultitenancyPoolProperties.PoolMode.SHARED_HOST);
+    }
 
     /* ─────────── Bootstrapper (runs at start-up) ─────────── */
 
+    @Bean @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "multitenancy.provisioning", name = "mode", havingValue = "template")
+    public TemplateDatabaseProvisioner templateDatabaseProvisioner(SchemaGenerator schemaGen,
+                                                                   MultitenancyProvisioningProperties provisioning) {
+        return new TemplateDatabaseProvisioner(
+                env.getProperty("multitenancy.admin.username", ""),
+                env.getProperty("multitenancy.admin.password", ""),
+                schemaGen,
+                provisioning
+        );
+    }
+
     @Bean @ConditionalOnMissingBean
     public TenantDatabaseCreator tenantDatabaseCreator(
             @Qualifier("adminDataSource") DataSource adminDataSource,
-            MultitenancyPoolProperties poolProps) {
+            MultitenancyPoolProperties poolProps,
+            ObjectProvider<MeterRegistry> meters,
+            ObjectProvider<TemplateDatabaseProvisioner> templates) {
 
+        /* shared-host tenants live in one database – nothing to clone */
+        boolean perDatabase = poolProps.getMode() != MultitenancyPoolProperties.PoolMode.SHARED_HOST;
         return new TenantDatabaseCreator(
                 adminDataSource,
                 env.getProperty("multitenancy.admin.username", ""),
                 env.getProperty("multitenancy.admin.password", ""),
-                poolProps
+                poolProps,
+                meters.getIfAvailable(SimpleMeterRegistry::new),
+                perDatabase ? templates.getIfAvailable() : null
         );
     }
 
@@ -78,7 +132,9 @@ public class MultitenancyAutoConfiguration {
             TenantDatabaseCreator dbCreator,
             MultitenancyProps props,
             SchemaGenerator schemaGen,
-            TenantAuditLogger auditLogger) {
+            TenantAuditLogger auditLogger,
+            MultitenancyBootstrapProperties bootstrapProps,
+            ObjectProvider<MeterRegistry> meters) {
 
         return new TenantBootstrapper(
                 registry,
@@ -86,24 +142,24 @@ public class MultitenancyAutoConfiguration {
                 tenantId -> { throw new UnsupportedOperationException("DS lookup not available in autoconfig"); },
                 schemaGen,
                 props.getSchemas(),
-                auditLogger
+                auditLogger,
+                bootstrapProps,
+                meters.getIfAvailable(SimpleMeterRegistry::new)
         );
     }
 
-    /* ─────────── Thread-local propagation ─────────── */
+    /* ─────────── Tenant propagation ─────────── */
 
+    /** Restores the worker's previous tenant instead of clearing it – safe for caller-runs and nested executors. */
     @Bean
     public TaskDecorator tenantAwareTaskDecorator() {
-        return runnable -> {
-            String tenant = TenantContext.get();
-            return () -> {
-                try {
-                    if (tenant != null) TenantContext.set(tenant);
-                    runnable.run();
-                } finally {
-                    TenantContext.clear();
-                }
-            };
-        };
+        return TenantContext::wrap;
+    }
+
+    /** Reactor / context-propagation: the tenant id travels as {@link TenantContext#KEY}. */
+    @Bean
+    @ConditionalOnClass(name = "io.micrometer.context.ContextRegistry")
+    public SmartInitializingSingleton tenantContextPropagation() {
+        return TenantContext::registerContextPropagation;
     }
 }
@@ -0,0 +1,75 @@
+package org.zakariafarih.multitenancybenchmarks;
+
+import org.zakariafarih.multitenancycore.*;
+import org.zakariafarih.multitenancyrouting.TenantDataSourceManager;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * H2 in-memory tenant fixture shared by the benchmarks:
+ * {@code bench_0 … bench_<n-1>}, clinic schema migrated.
+ */
+final class BenchTenants {
+
+    static final String[] SCHEMAS  = { "clinic" };
+    static final String[] PACKAGES = { "org.zakariafarih.cliniccore" };
+
+    /** Pre-drawn tenant sequence length – a power of two so the cursor is a mask. */
+    static final int DRAWS = 4096;
+
+    final TenantRegistry          registry = new MapTenantRegistry();
+    final MultitenancyPoolProperties pool  = new MultitenancyPoolProperties();
+    final MultitenancyProps       props    = new MultitenancyProps();
+    final TenantDataSourceManager dsm;
+    final String[]                ids;
+
+    BenchTenants(int count) {
+        props.setSchemas(SCHEMAS);
+        props.setPackages(PACKAGES);
+        pool.setMaxTenantPools(Math.max(count, pool.getMaxTenantPools()));
+
+        ids = new String[count];
+        for (int i = 0; i < count; i++) {
+            var cfg = new TenantProperties.TenantConfig();
+            cfg.setId("bench_" + i);
+            cfg.setDbName("bench_" + i);
+            cfg.setMaxPool(4);
+            registry.register(cfg);
+            ids[i] = cfg.getId();
+        }
+        dsm = new TenantDataSourceManager(registry, pool, props, new MultitenancyMonitoringProperties(),
+                new SchemaGenerator(new MultitenancyFlywayProperties()));
+    }
+
+    /** Builds every tenant pool up front so measurements never include Flyway. */
+    BenchTenants warm() {
+        for (String id : ids) dsm.get(id);
+        return this;
+    }
+
+    /**
+     * {@link #DRAWS} tenant ids in request order.
+     * {@code uniform}: every tenant equally likely; {@code zipf}: tenant k
+     * is hit with weight 1/(k+1), i.e. a few hot tenants and a long tail.
+     */
+    String[] draws(String skew) {
+        var rnd = new SplittableRandom(42);
+        double[] cumulative = new double[ids.length];
+        double sum = 0;
+        for (int k = 0; k < ids.length; k++) {
+            sum += "zipf".equals(skew) ? 1.0 / (k + 1) : 1.0;
+            cumulative[k] = sum;
+        }
+
+        String[] out = new String[DRAWS];
+        for (int i = 0; i < DRAWS; i++) {
+            double u = rnd.nextDouble() * sum;
+            int k = Arrays.binarySearch(cumulative, u);
+            out[i] = ids[Math.min(k < 0 ? -k - 1 : k, ids.length - 1)];
+        }
+        return out;
+    }
+
+    void close() { dsm.destroy(); }
+}
@@ -0,0 +1,84 @@
+package org.zakariafarih.multitenancybenchmarks;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.*;
+import org.zakariafarih.multitenancycore.EMFProvider;
+import org.zakariafarih.multitenancycore.PersistenceUnitScanCache;
+
+import javax.sql.DataSource;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link EMFProvider#get}: {@code cold} builds a fresh EntityManagerFactory
+ * (single shot per invocation, the first request of a tenant), {@code warm}
+ * is the cache hit every later request pays.
+ */
+@Fork(1)
+@State(Scope.Benchmark)
+public class EmfProviderBenchmark {
+
+    @Param({ "10", "50" })
+    public int tenants;
+
+    @Param({ "uniform", "zipf" })
+    public String skew;
+
+    private BenchTenants             fixture;
+    private PersistenceUnitScanCache scanCache;
+    private EMFProvider              warmProvider;
+    private String[]                 draws;
+
+    @Setup
+    public void setUp() {
+        fixture      = new BenchTenants(tenants).warm();
+        scanCache    = new PersistenceUnitScanCache();
+        warmProvider = new EMFProvider(scanCache);
+        draws        = fixture.draws(skew);
+
+        for (String id : fixture.ids) warmProvider.get(fixture.dsm.get(id), id, "clinic", BenchTenants.PACKAGES);
+    }
+
+    @TearDown
+    public void tearDown() {
+        warmProvider.destroy();
+        fixture.close();
+    }
+
+    /** Fresh provider per invocation, sharing the (already warm) package scan. */
+    @State(Scope.Thread)
+    public static class Cold {
+        EMFProvider provider;
+
+        @Setup(Level.Invocation)
+        public void open(EmfProviderBenchmark bench) { provider = new EMFProvider(bench.scanCache); }
+
+        @TearDown(Level.Invocation)
+        public void close() { provider.destroy(); }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 5)
+    @Measurement(iterations = 20)
+    public EntityManagerFactory cold(Cold cold, Cursor cursor) {
+        String tenant = draws[cursor.next++ & (BenchTenants.DRAWS - 1)];
+        DataSource ds = fixture.dsm.get(tenant);
+        return cold.provider.get(ds, tenant, "clinic", BenchTenants.PACKAGES);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public EntityManagerFactory warm(Cursor cursor) {
+        String tenant = draws[cursor.next++ & (BenchTenants.DRAWS - 1)];
+        return warmProvider.get(fixture.dsm.get(tenant), tenant, "clinic", BenchTenants.PACKAGES);
+    }
+}
@@ -0,0 +1,63 @@
+package org.zakariafarih.multitenancybenchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.zakariafarih.cliniccore.PatientRepository;
+import org.zakariafarih.multitenancycore.EMFProvider;
+import org.zakariafarih.multitenancycore.PersistenceUnitScanCache;
+import org.zakariafarih.multitenancyrouting.EntityManagerFactoryManager;
+import org.zakariafarih.multitenancyrouting.TenantRepositoryFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TenantRepositoryFactory#getRepository} with every tenant's pool,
+ * EntityManagerFactory and repository factory already built – the cost a
+ * request pays on each repository lookup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RepositoryBenchmark {
+
+    @Param({ "10", "50" })
+    public int tenants;
+
+    @Param({ "uniform", "zipf" })
+    public String skew;
+
+    private BenchTenants            fixture;
+    private EMFProvider             emfProvider;
+    private TenantRepositoryFactory repositories;
+    private String[]                draws;
+
+    @Setup
+    public void setUp() {
+        fixture      = new BenchTenants(tenants).warm();
+        emfProvider  = new EMFProvider(new PersistenceUnitScanCache());
+        repositories = new TenantRepositoryFactory(fixture.dsm,
+                new EntityManagerFactoryManager(emfProvider, BenchTenants.PACKAGES));
+        draws        = fixture.draws(skew);
+
+        for (String id : fixture.ids) repositories.getRepository(PatientRepository.class, id, "clinic");
+    }
+
+    @TearDown
+    public void tearDown() {
+        emfProvider.destroy();
+        fixture.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public PatientRepository getRepository(Cursor cursor) {
+        String tenant = draws[cursor.next++ & (BenchTenants.DRAWS - 1)];
+        return repositories.getRepository(PatientRepository.class, tenant, "clinic");
+    }
+}
@@ -0,0 +1,125 @@
+package org.zakariafarih.multitenancybenchmarks;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.zakariafarih.multitenancycore.TenantContext;
+import org.zakariafarih.multitenancyrouting.DynamicRoutingDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of {@link DynamicRoutingDataSource#getConnection()} over a raw
+ * Hikari pool: outside a transaction (pool-cache lookup per call) and inside
+ * one (resolved pool bound to the transaction). {@code routingAcrossTenants}
+ * spreads calls over many tenants, uniformly or Zipf-skewed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RoutingDataSourceBenchmark {
+
+    private BenchTenants             tenants;
+    private HikariDataSource         raw;
+    private DynamicRoutingDataSource routing;
+
+    @Setup
+    public void setUp() {
+        tenants = new BenchTenants(1).warm();
+        routing = new DynamicRoutingDataSource(tenants.dsm);
+
+        HikariConfig hc = new HikariConfig();
+        hc.setJdbcUrl("jdbc:h2:mem:bench_raw;MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+        hc.setUsername("sa");
+        hc.setPassword("");
+        hc.setMaximumPoolSize(4);
+        raw = new HikariDataSource(hc);
+    }
+
+    @TearDown
+    public void tearDown() {
+        raw.close();
+        tenants.close();
+    }
+
+    /** Per-thread tenant binding, optionally inside an (open) transaction synchronization. */
+    @State(Scope.Thread)
+    public static class Caller {
+        @Param({ "false", "true" })
+        public boolean inTransaction;
+
+        @Setup
+        public void bind(RoutingDataSourceBenchmark bench) {
+            TenantContext.set(bench.tenants.ids[0]);
+            if (inTransaction) TransactionSynchronizationManager.initSynchronization();
+        }
+
+        @TearDown
+        public void unbind() {
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                List.copyOf(TransactionSynchronizationManager.getResourceMap().keySet())
+                        .forEach(TransactionSynchronizationManager::unbindResource);
+                TransactionSynchronizationManager.clearSynchronization();
+            }
+            TenantContext.clear();
+        }
+    }
+
+    /** Many tenants, requests drawn from {@link BenchTenants#draws}. */
+    @State(Scope.Benchmark)
+    public static class Spread {
+        @Param({ "10", "100" })
+        public int tenants;
+
+        @Param({ "uniform", "zipf" })
+        public String skew;
+
+        BenchTenants             fixture;
+        DynamicRoutingDataSource routing;
+        String[]                 draws;
+
+        @Setup
+        public void setUp() {
+            fixture = new BenchTenants(tenants).warm();
+            routing = new DynamicRoutingDataSource(fixture.dsm);
+            draws   = fixture.draws(skew);
+        }
+
+        @TearDown
+        public void tearDown() { fixture.close(); }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public Connection rawHikari() throws SQLException {
+        try (Connection c = raw.getConnection()) {
+            return c;
+        }
+    }
+
+    @Benchmark
+    public Connection routing(Caller caller) throws SQLException {
+        try (Connection c = routing.getConnection()) {
+            return c;
+        }
+    }
+
+    @Benchmark
+    public Connection routingAcrossTenants(Spread spread, Cursor cursor) throws SQLException {
+        TenantContext.set(spread.draws[cursor.next++ & (BenchTenants.DRAWS - 1)]);
+        try (Connection c = spread.routing.getConnection()) {
+            return c;
+        }
+    }
+}
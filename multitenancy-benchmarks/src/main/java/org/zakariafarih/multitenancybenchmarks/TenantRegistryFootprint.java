@@ -0,0 +1,71 @@
+package org.zakariafarih.multitenancybenchmarks;
+
+import org.zakariafarih.multitenancycore.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Retained heap of each {@link TenantRegistry} implementation at 10k, 100k
+ * and 1M tenants. Heap size is not something JMH measures, so this is a
+ * plain main:
+ *
+ * <pre>java -Xmx4g -cp target/benchmarks.jar \
+ *     org.zakariafarih.multitenancybenchmarks.TenantRegistryFootprint [counts…]</pre>
+ *
+ * Descriptors look like parsed YAML: every string is a distinct instance,
+ * tenants spread over 16 hosts and share one database user.
+ */
+public final class TenantRegistryFootprint {
+
+    private static final int HOSTS = 16;
+
+    public static void main(String[] args) {
+        int[] counts = args.length > 0
+                ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                : new int[]{ 10_000, 100_000, 1_000_000 };
+
+        System.out.printf("%-8s %10s %12s %10s %10s%n", "registry", "tenants", "retained", "B/tenant", "build ms");
+        for (int n : counts) {
+            measure("map",     n, MapTenantRegistry::new);
+            measure("compact", n, CompactTenantRegistry::new);
+        }
+    }
+
+    private static void measure(String name, int n,
+                                Function<List<TenantProperties.TenantConfig>, TenantRegistry> factory) {
+        long before = usedHeap();
+        long start  = System.nanoTime();
+        TenantRegistry registry = factory.apply(descriptors(n));   // descriptors are garbage afterwards
+        long buildMs = (System.nanoTime() - start) / 1_000_000;
+        long retained = usedHeap() - before;
+
+        if (!registry.contains("tenant_" + (n - 1))) throw new AssertionError(name + " lost a tenant");
+        System.out.printf("%-8s %10d %9.1f MB %10d %10d%n",
+                name, n, retained / 1048576.0, retained / n, buildMs);
+    }
+
+    private static List<TenantProperties.TenantConfig> descriptors(int n) {
+        List<TenantProperties.TenantConfig> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            var cfg = new TenantProperties.TenantConfig();
+            cfg.setId("tenant_" + i);
+            cfg.setDbName("tenant_" + i);
+            cfg.setDbUser(new String("app_user"));
+            cfg.setDbPassword(new String("app_secret"));
+            cfg.setHost("db-" + (i % HOSTS) + ".internal");
+            cfg.setMaxPool(4);
+            out.add(cfg);
+        }
+        return out;
+    }
+
+    private static long usedHeap() {
+        var memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,114 @@
+package org.zakariafarih.multitenancybenchmarks;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import org.openjdk.jmh.annotations.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.zakariafarih.multitenancycore.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request tenant resolution: the resolver chain alone and the full
+ * {@link TenantFilter#doFilter} (skip-list match, resolution, context set/clear).
+ * {@code source} selects where the id travels, which decides how many
+ * resolvers of the chain run before one answers. Run with {@code -prof gc}
+ * to see the per-request allocation rate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TenantResolutionBenchmark {
+
+    @Param({ "10", "1000" })
+    public int tenants;
+
+    @Param({ "uniform", "zipf" })
+    public String skew;
+
+    @Param({ "header", "path", "query", "cookie" })
+    public String source;
+
+    private TenantIdResolver          chain;
+    private TenantFilter              filter;
+    private MockHttpServletRequest[]  requests;
+    private final MockHttpServletResponse response = new MockHttpServletResponse();
+    private final FilterChain         next = (req, res) -> { };
+    private final MockHttpServletRequest skipped = new MockHttpServletRequest("GET", "/actuator/health");
+
+    @Setup
+    public void setUp() {
+        var fixture = new BenchTenants(tenants);     // pools stay lazy – no database work here
+        chain = new ChainedTenantIdResolver(List.of(
+                new HeaderPathTenantIdResolver(fixture.registry),
+                new QueryParamTenantIdResolver(),
+                new CookieTenantIdResolver()), fixture.registry);
+        var resolution = new MultitenancyResolutionProperties();
+        filter = new TenantFilter(chain, fixture.registry, resolution,
+                new UnknownTenantGuard(resolution, new SimpleMeterRegistry()),
+                new StaticListableBeanFactory().getBeanProvider(TenantBootstrapper.class));
+
+        String[] ids = fixture.draws(skew);
+        requests = new MockHttpServletRequest[ids.length];
+        for (int i = 0; i < ids.length; i++) requests[i] = request(ids[i]);
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+        MockHttpServletRequest advance(MockHttpServletRequest[] requests) {
+            return requests[next++ & (BenchTenants.DRAWS - 1)];
+        }
+    }
+
+    @Benchmark
+    public String resolverChain(Cursor cursor) {
+        return chain.resolveTenantId(cursor.advance(requests));
+    }
+
+    @Benchmark
+    public MockHttpServletResponse tenantFilter(Cursor cursor) throws IOException, ServletException {
+        filter.doFilter(cursor.advance(requests), response, next);
+        return response;
+    }
+
+    /** Skip-list hit: no resolution at all. */
+    @Benchmark
+    public MockHttpServletResponse skippedPath() throws IOException, ServletException {
+        filter.doFilter(skipped, response, next);
+        return response;
+    }
+
+    /* ——— helpers ——— */
+
+    private MockHttpServletRequest request(String tenant) {
+        return switch (source) {
+            case "header" -> {
+                var r = new MockHttpServletRequest("GET", "/patients");
+                r.addHeader("X-Tenant", tenant);
+                yield r;
+            }
+            case "path" -> new MockHttpServletRequest("GET", "/tenants/" + tenant + "/patients");
+            case "query" -> {
+                var r = new MockHttpServletRequest("GET", "/patients");
+                r.setParameter("tenant", tenant);
+                yield r;
+            }
+            case "cookie" -> {
+                var r = new MockHttpServletRequest("GET", "/patients");
+                r.setCookies(new Cookie("X-Tenant", tenant));
+                yield r;
+            }
+            default -> throw new IllegalArgumentException("Unknown source " + source);
+        };
+    }
+}
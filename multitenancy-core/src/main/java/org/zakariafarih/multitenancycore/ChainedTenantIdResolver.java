@@ -10,7 +10,8 @@ import java.util.List;
 /**
  * Iterates over all available {@link TenantIdResolver} beans
  * (respecting {@link org.springframework.core.annotation.Order})
- * and returns the first non-blank tenant id.
+ * and returns the first non-blank tenant id, canonicalised against the
+ * {@link TenantRegistry} so the request's own string is not retained.
  *
  * Marked {@code @Primary} so every injection point receives the chain
  * while individual resolvers remain independently testable / overridable.
@@ -20,16 +21,18 @@ import java.util.List;
 @org.springframework.context.annotation.Primary
 public class ChainedTenantIdResolver implements TenantIdResolver {
 
-    private final List<TenantIdResolver> delegates;
+    private final TenantIdResolver[] delegates;
+    private final TenantRegistry     registry;
 
-    public ChainedTenantIdResolver(List<TenantIdResolver> resolvers) {
+    public ChainedTenantIdResolver(List<TenantIdResolver> resolvers, TenantRegistry registry) {
         // keep deterministic order, exclude self
         this.delegates = resolvers.stream()
                 .filter(r -> !(r instanceof ChainedTenantIdResolver))
                 .sorted(OrderComparator.INSTANCE)
-                .toList();
+                .toArray(TenantIdResolver[]::new);
+        this.registry = registry;
 
-        log.info("Tenant-resolver chain: {}", delegates);
+        log.info("Tenant-resolver chain: {}", List.of(delegates));
     }
 
     @Override
@@ -37,7 +40,7 @@ public class ChainedTenantIdResolver implements TenantIdResolver {
         for (TenantIdResolver r : delegates) {
             String id = r.resolveTenantId(request);
             if (id != null && !id.isBlank()) {
-                return id.trim();
+                return registry.canonicalId(id.trim());     // trim() returns `id` itself when clean
             }
         }
         return null;
@@ -0,0 +1,352 @@
+package org.zakariafarih.multitenancycore;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * {@link TenantRegistry} for very large tenant counts (100k+).
+ *
+ * Descriptors are stored column-wise in an immutable {@link Columns} snapshot
+ * addressed through the {@link TenantIdIndex} row of each id: one array per
+ * field instead of one object per tenant. Equal hosts, users and passwords
+ * are stored once however many tenants share them, and a database name equal to
+ * the tenant id is not stored at all. {@link #get} materialises a fresh
+ * {@link TenantProperties.TenantConfig} – callers that mutate it do not
+ * change the registry; the field accessors ({@link #maxPool}, {@link #hostKey}
+ * …) read the columns without materialising one.
+ *
+ * {@link #register}, {@link #registerAll} and {@link #unregister} land in a small overlay
+ * (added descriptors, removed ids) next to the columns, which are rebuilt
+ * only once the overlay outgrows {@code max(64, n / 16)} entries – so a
+ * stream of runtime registrations costs amortised O(1) column copies each.
+ * The overlay's ids get their own {@link TenantIdIndex}, so resolving an
+ * unknown id from a request stays O(length) however large the overlay is.
+ * {@link #apply} always rebuilds.
+ */
+public class CompactTenantRegistry implements TenantRegistry {
+
+    /** Stands in for a database name equal to the tenant id; compared by identity. */
+    @SuppressWarnings("StringOperationCanBeSimplified")
+    private static final String SAME_AS_ID = new String("=id");
+
+    private static final int MIN_OVERLAY = 64;
+
+    private volatile Snapshot state;
+
+    private final Map<String, TenantProperties.TenantConfig> view = new View();
+
+    /** Loads every tenant descriptor found on the class-path. */
+    public CompactTenantRegistry() {
+        this(new TenantDescriptorLoader().load());
+    }
+
+    public CompactTenantRegistry(Collection<TenantProperties.TenantConfig> tenants) {
+        Map<String, TenantProperties.TenantConfig> unique = new LinkedHashMap<>();
+        tenants.forEach(cfg -> unique.put(cfg.getId(), cfg));
+        state = Snapshot.of(build(List.copyOf(unique.values())));
+    }
+
+    @Override
+    public Map<String, TenantProperties.TenantConfig> getTenantMap() { return view; }
+
+    @Override
+    public boolean contains(String tenantId) {
+        Snapshot s = state;
+        return s.row(tenantId) >= 0 || s.added.containsKey(tenantId);
+    }
+
+    @Override
+    public TenantProperties.TenantConfig get(String tenantId) {
+        TenantProperties.TenantConfig cfg = state.materialise(tenantId);
+        if (cfg == null) throw UnknownTenantException.of(tenantId);
+        return cfg;
+    }
+
+    /* ——— field access without materialising ——— */
+
+    @Override
+    public int maxPool(String tenantId) {
+        Snapshot s = state;
+        int row = s.row(tenantId);
+        return row >= 0 ? s.base.maxPools[row] : s.added(tenantId).getMaxPool();
+    }
+
+    @Override
+    public int priority(String tenantId) {
+        Snapshot s = state;
+        int row = s.row(tenantId);
+        return row >= 0 ? s.base.priorities[row] : s.added(tenantId).getPriority();
+    }
+
+    @Override
+    public String hostKey(String tenantId) {
+        Snapshot s = state;
+        int row = s.row(tenantId);
+        return row >= 0
+                ? TenantProperties.TenantConfig.hostKey(s.base.hosts[row], s.base.ports[row])
+                : s.added(tenantId).hostKey();
+    }
+
+    /* ——— writes ——— */
+
+    @Override
+    public synchronized boolean register(TenantProperties.TenantConfig cfg) {
+        Snapshot s = state;
+        if (s.row(cfg.getId()) >= 0 || s.added.containsKey(cfg.getId())) return false;
+        Map<String, TenantProperties.TenantConfig> added = new HashMap<>(s.added);
+        added.put(cfg.getId(), cfg.copy());
+        publish(Snapshot.of(s.base, Map.copyOf(added), s.removed));
+        return true;
+    }
+
+    @Override
+    public synchronized List<TenantProperties.TenantConfig> registerAll(Collection<TenantProperties.TenantConfig> cfgs) {
+        Snapshot s = state;
+        Map<String, TenantProperties.TenantConfig> added = new HashMap<>(s.added);
+        List<TenantProperties.TenantConfig> registered = new ArrayList<>();
+        for (var cfg : cfgs) {
+            if (s.row(cfg.getId()) >= 0 || added.putIfAbsent(cfg.getId(), cfg.copy()) != null) continue;
+            registered.add(cfg);
+        }
+        if (!registered.isEmpty()) publish(Snapshot.of(s.base, Map.copyOf(added), s.removed));
+        return registered;
+    }
+
+    @Override
+    public synchronized TenantProperties.TenantConfig unregister(String tenantId) {
+        Snapshot s = state;
+        TenantProperties.TenantConfig cfg = s.added.get(tenantId);
+        if (cfg != null) {
+            Map<String, TenantProperties.TenantConfig> added = new HashMap<>(s.added);
+            added.remove(tenantId);
+            publish(Snapshot.of(s.base, Map.copyOf(added), s.removed));
+            return cfg.copy();
+        }
+        int row = s.row(tenantId);
+        if (row < 0) return null;
+        Set<String> removed = new HashSet<>(s.removed);
+        removed.add(s.base.ids[row]);
+        publish(Snapshot.of(s.base, s.added, Set.copyOf(removed)));
+        return s.base.materialise(row);
+    }
+
+    @Override
+    public synchronized void apply(Collection<TenantProperties.TenantConfig> upserts, Collection<String> removals) {
+        if (upserts.isEmpty() && removals.isEmpty()) return;
+        Snapshot s = state;
+        Map<String, TenantProperties.TenantConfig> replaced = new HashMap<>();
+        upserts.forEach(cfg -> replaced.put(cfg.getId(), cfg));
+        Set<String> removed = Set.copyOf(removals);
+
+        List<TenantProperties.TenantConfig> all = new ArrayList<>(s.size() + upserts.size());
+        s.forEachRow((id, row) -> {
+            if (removed.contains(id)) return;
+            TenantProperties.TenantConfig cfg = replaced.remove(id);
+            all.add(cfg != null ? cfg : s.base.materialise(row));
+        });
+        s.added.forEach((id, cfg) -> {
+            if (removed.contains(id)) return;
+            TenantProperties.TenantConfig upsert = replaced.remove(id);
+            all.add(upsert != null ? upsert : cfg);
+        });
+        all.addAll(replaced.values());                 // ids not registered before
+        state = Snapshot.of(build(all));
+    }
+
+    @Override
+    public String canonicalId(String tenantId) {
+        Snapshot s = state;
+        int row = s.row(tenantId);
+        if (row >= 0) return s.base.ids[row];
+        TenantProperties.TenantConfig added = s.added.get(tenantId);
+        return added != null ? added.getId() : tenantId;
+    }
+
+    @Override
+    public String canonicalId(CharSequence chars, int from, int to) {
+        Snapshot s = state;
+        String id = s.base.index.find(chars, from, to);
+        if (id != null && !s.removed.contains(id)) return id;
+        return s.added.isEmpty() ? null : s.addedIndex.find(chars, from, to);
+    }
+
+    /* ——— internal ——— */
+
+    /** Publishes {@code next}, folding the overlay into fresh columns once it has grown too large. */
+    private void publish(Snapshot next) {
+        int overlay = next.added.size() + next.removed.size();
+        if (overlay <= Math.max(MIN_OVERLAY, next.base.size() >> 4)) {
+            state = next;
+            return;
+        }
+        List<TenantProperties.TenantConfig> all = new ArrayList<>(next.size());
+        next.forEachRow((id, row) -> all.add(next.base.materialise(row)));
+        all.addAll(next.added.values());
+        state = Snapshot.of(build(all));
+    }
+
+    /** Copies {@code tenants} into fresh columns; equal strings end up as one instance. */
+    private static Columns build(List<TenantProperties.TenantConfig> tenants) {
+        Map<String, String> pool = new HashMap<>();
+        UnaryOperator<String> intern = s -> s == null ? null : pool.computeIfAbsent(s, k -> k);
+
+        Columns c = new Columns(tenants.size());
+        for (int row = 0; row < tenants.size(); row++) {
+            var cfg = tenants.get(row);
+            String id = cfg.getId();
+            c.ids[row]          = id;
+            c.dbNames[row]      = id.equals(cfg.getDbName()) ? SAME_AS_ID : intern.apply(cfg.getDbName());
+            c.users[row]        = intern.apply(cfg.getDbUser());
+            c.passwords[row]    = intern.apply(cfg.getDbPassword());
+            c.hosts[row]        = intern.apply(cfg.getHost());
+            c.schemas[row]      = intern.apply(cfg.getSchema());
+            c.ports[row]        = cfg.getPort();
+            c.maxPools[row]     = cfg.getMaxPool();
+            c.priorities[row]   = cfg.getPriority();
+            c.idleTimeouts[row] = cfg.getIdleTimeoutMs();
+        }
+        c.index = new TenantIdIndex(Arrays.asList(c.ids));
+        return c;
+    }
+
+    /** One array per descriptor field, indexed by row; never modified once published. */
+    private static final class Columns {
+        TenantIdIndex  index;
+        final String[] ids, dbNames, users, passwords, hosts, schemas;   // dbNames[r] == SAME_AS_ID → ids[r]
+        final int[]    ports, maxPools, priorities;
+        final long[]   idleTimeouts;
+
+        Columns(int n) {
+            ids = new String[n];     dbNames = new String[n];   users = new String[n];
+            passwords = new String[n]; hosts = new String[n];   schemas = new String[n];
+            ports = new int[n];      maxPools = new int[n];     priorities = new int[n];
+            idleTimeouts = new long[n];
+        }
+
+        int size() { return ids.length; }
+
+        TenantProperties.TenantConfig materialise(int row) {
+            var cfg = new TenantProperties.TenantConfig();
+            cfg.setId(ids[row]);
+            cfg.setDbName(dbNames[row] == SAME_AS_ID ? ids[row] : dbNames[row]);
+            cfg.setDbUser(users[row]);
+            cfg.setDbPassword(passwords[row]);
+            cfg.setHost(hosts[row]);
+            cfg.setSchema(schemas[row]);
+            cfg.setPort(ports[row]);
+            cfg.setMaxPool(maxPools[row]);
+            cfg.setPriority(priorities[row]);
+            cfg.setIdleTimeoutMs(idleTimeouts[row]);
+            return cfg;
+        }
+    }
+
+    /** Base columns plus the registrations and removals made since they were built. */
+    private record Snapshot(Columns base,
+                            Map<String, TenantProperties.TenantConfig> added,   // ids not in base (or removed from it)
+                            Set<String> removed,                             // base ids no longer registered
+                            TenantIdIndex addedIndex) {                      // region probes of added ids
+
+        static Snapshot of(Columns base) { return new Snapshot(base, Map.of(), Set.of(), TenantIdIndex.EMPTY); }
+
+        static Snapshot of(Columns base, Map<String, TenantProperties.TenantConfig> added, Set<String> removed) {
+            return new Snapshot(base, added, removed,
+                    added.isEmpty() ? TenantIdIndex.EMPTY : new TenantIdIndex(added.keySet()));
+        }
+
+        int size() { return base.size() - removed.size() + added.size(); }
+
+        /** Live base row of {@code id}, or -1. */
+        int row(String id) {
+            int row = base.index.row(id);
+            return row >= 0 && (removed.isEmpty() || !removed.contains(id)) ? row : -1;
+        }
+
+        TenantProperties.TenantConfig added(String id) {
+            TenantProperties.TenantConfig cfg = added.get(id);
+            if (cfg == null) throw UnknownTenantException.of(id);
+            return cfg;
+        }
+
+        TenantProperties.TenantConfig materialise(String id) {
+            int row = row(id);
+            if (row >= 0) return base.materialise(row);
+            TenantProperties.TenantConfig cfg = added.get(id);
+            return cfg == null ? null : cfg.copy();
+        }
+
+        void forEachRow(RowVisitor visitor) {
+            for (int row = 0; row < base.size(); row++) {
+                String id = base.ids[row];
+                if (removed.isEmpty() || !removed.contains(id)) visitor.visit(id, row);
+            }
+        }
+
+        /** Every registered id of this snapshot: live base rows, then the overlay. */
+        List<String> ids() {
+            List<String> ids = new ArrayList<>(size());
+            forEachRow((id, row) -> ids.add(id));
+            ids.addAll(added.keySet());
+            return ids;
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowVisitor { void visit(String id, int row); }
+
+    /** Read-only map over the current snapshot; values are materialised on access. */
+    private final class View extends AbstractMap<String, TenantProperties.TenantConfig> {
+
+        @Override public int size() { return state.size(); }
+
+        @Override public boolean containsKey(Object key) {
+            return key instanceof String id && contains(id);
+        }
+
+        @Override public TenantProperties.TenantConfig get(Object key) {
+            return key instanceof String id ? state.materialise(id) : null;
+        }
+
+        @Override public Set<String> keySet() {
+            Snapshot s = state;
+            return new AbstractSet<>() {
+                @Override public int size() { return s.size(); }
+                @Override public boolean contains(Object o) {
+                    return o instanceof String id && (s.row(id) >= 0 || s.added.containsKey(id));
+                }
+                @Override public Iterator<String> iterator() {
+                    return Collections.unmodifiableList(s.ids()).iterator();
+                }
+            };
+        }
+
+        @Override public Set<Entry<String, TenantProperties.TenantConfig>> entrySet() {
+            Snapshot s = state;
+            return new AbstractSet<>() {
+                @Override public int size() { return s.size(); }
+                @Override public Iterator<Entry<String, TenantProperties.TenantConfig>> iterator() {
+                    Iterator<String> ids = s.ids().iterator();     // same snapshot as the values
+                    return new Iterator<>() {
+                        @Override public boolean hasNext() { return ids.hasNext(); }
+                        @Override public Entry<String, TenantProperties.TenantConfig> next() {
+                            String id = ids.next();
+                            return new SimpleImmutableEntry<>(id, s.materialise(id));
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
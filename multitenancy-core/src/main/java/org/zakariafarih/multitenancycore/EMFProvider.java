@@ -2,51 +2,218 @@ package org.zakariafarih.multitenancycore;
 
 import com.github.benmanes.caffeine.cache.*;
 import jakarta.persistence.EntityManagerFactory;
-import lombok.RequiredArgsConstructor;
+import jakarta.persistence.SynchronizationType;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
 import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
 
 import javax.sql.DataSource;
-import java.time.Duration;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
 
-@RequiredArgsConstructor
 @Slf4j
-public class EMFProvider {
+public class EMFProvider implements DisposableBean {
 
-    private final LoadingCache<String, EntityManagerFactory> cache =
+    private final PersistenceUnitScanCache scanCache;
+    private final boolean                  qualifySchema;   // false = unqualified names, search_path decides
+
+    public EMFProvider(PersistenceUnitScanCache scanCache) {
+        this(scanCache, true);
+    }
+
+    public EMFProvider(PersistenceUnitScanCache scanCache, boolean qualifySchema) {
+        this.scanCache     = scanCache;
+        this.qualifySchema = qualifySchema;
+    }
+
+    /* unbounded – entries leave with their tenant's pool (see evictTenant) */
+    private final LoadingCache<String, Bound> cache =
             Caffeine.newBuilder()
-                    .maximumSize(500)
-                    .expireAfterAccess(Duration.ofHours(4))
-                    .removalListener(this::closeEmf)
+                    .removalListener((String key, Bound b, RemovalCause cause) -> closeEmf(key, b == null ? null : b.emf(), cause))
                     .build(key -> null);
 
+    private final List<BiConsumer<String, Long>> buildListeners = new CopyOnWriteArrayList<>();
+    private final Set<EntityManagerFactory>      retiring       = ConcurrentHashMap.newKeySet();
+
+    /* one metamodel per schema – never evicted, closed on shutdown */
+    private final Map<String, EntityManagerFactory> shared = new ConcurrentHashMap<>();
+
+    /* is a DataSource still its tenant's live pool? – answered by the pool manager */
+    private volatile BiPredicate<String, DataSource> livePool = (tenant, ds) -> true;
+
+    /** An EMF and the tenant pool it was built over ({@code null} for tenant views). */
+    private record Bound(DataSource ds, EntityManagerFactory emf) {}
+
+    /**
+     * Returns the tenant's EMF over {@code ds}. An entry built over a pool
+     * that is no longer live – a build that raced the pool's eviction – is
+     * closed and rebuilt, so no EMF stays bound to a closed pool.
+     */
     public EntityManagerFactory get(DataSource ds,
                                     String tenantId,
                                     String schema,
                                     String[] packages) {
         String key = tenantId + '|' + schema;
-        return cache.get(key, __ -> build(ds, schema, packages));
+        long[] took = { -1 };
+        Bound bound = cache.get(key, __ -> bind(ds, schema, packages, took));
+        if (bound.ds() != ds && !livePool.test(tenantId, bound.ds()) && cache.asMap().remove(key, bound)) {
+            log.info("EMF {} was built over a retired pool – rebuilding", key);
+            bound = cache.get(key, __ -> bind(ds, schema, packages, took));
+        }
+        /* outside the loader – a listener may evict this very tenant */
+        if (took[0] >= 0) buildListeners.forEach(l -> l.accept(tenantId, took[0]));
+        return bound.emf();
+    }
+
+    /**
+     * Returns a tenant-bound view over the schema's shared EntityManagerFactory.
+     * The metamodel is built once per schema; {@code tenancy} must carry the
+     * Hibernate multi-tenant connection provider / tenant resolver settings.
+     */
+    public EntityManagerFactory getShared(String tenantId,
+                                          String schema,
+                                          String[] packages,
+                                          Map<String, Object> tenancy) {
+        String key = tenantId + '|' + schema;
+        return cache.get(key, __ -> new Bound(null, tenantView(
+                shared.computeIfAbsent(schema, s -> build(null, s, packages, tenancy)),
+                tenantId))).emf();
+    }
+
+    /** Tells {@link #get} whether a tenant's DataSource is still its live pool (default: always). */
+    public void setLivePool(BiPredicate<String, DataSource> livePool) {
+        this.livePool = livePool;
+    }
+
+    /** Invoked after a tenant-owned EMF has been built, with its build time in nanos. */
+    public void addBuildListener(BiConsumer<String, Long> listener) {
+        buildListeners.add(listener);
+    }
+
+    /** Closes and forgets every EMF (or tenant view) of {@code tenantId}. */
+    public void evictTenant(String tenantId) {
+        retireTenant(tenantId).run();
+    }
+
+    /**
+     * Forgets every EMF of {@code tenantId} at once – new lookups build fresh
+     * ones – and returns the task that closes the old ones, e.g. once the
+     * transactions still running on them have finished.
+     */
+    public Runnable retireTenant(String tenantId) {
+        String prefix = tenantId + '|';
+        Map<String, EntityManagerFactory> detached = new HashMap<>();
+        for (String key : List.copyOf(cache.asMap().keySet())) {
+            if (!key.startsWith(prefix)) continue;
+            Bound bound = cache.getIfPresent(key);
+            if (bound == null) continue;
+            retiring.add(bound.emf());
+            if (cache.asMap().remove(key, bound)) detached.put(key, bound.emf());
+            else retiring.remove(bound.emf());
+        }
+        return () -> detached.forEach((key, emf) -> {
+            retiring.remove(emf);
+            closeEmf(key, emf, RemovalCause.EXPLICIT);
+        });
+    }
+
+    @Override
+    public void destroy() {
+        cache.invalidateAll();
+        cache.cleanUp();
+        shared.values().forEach(EntityManagerFactory::close);
+        shared.clear();
     }
 
     /* ---------- helpers ---------- */
 
     private void closeEmf(String key, EntityManagerFactory emf, RemovalCause cause) {
-        if (emf != null) emf.close();
+        if (emf == null || retiring.contains(emf) || !emf.isOpen()) return;   // retired: closed by its task
+        emf.close();
         log.info("Closed EMF {} (cause: {})", key, cause);
     }
 
+    private Bound bind(DataSource ds, String schema, String[] packages, long[] took) {
+        long start = System.nanoTime();
+        EntityManagerFactory built = build(ds, schema, packages, Map.of());
+        took[0] = System.nanoTime() - start;
+        return new Bound(ds, built);
+    }
+
     private EntityManagerFactory build(DataSource ds,
                                        String schema,
-                                       String[] packages) {
+                                       String[] packages,
+                                       Map<String, Object> extraProps) {
 
-        log.info("Building EMF for schema {}", schema);
+        log.info("Building EMF for schema {}{}", schema, ds == null ? " (shared)" : "");
         LocalContainerEntityManagerFactoryBean fb = new LocalContainerEntityManagerFactoryBean();
-        fb.setDataSource(ds);
-        fb.setPackagesToScan(packages);
+        if (ds != null) fb.setDataSource(ds);
+        fb.setManagedTypes(scanCache.get(packages));   // scanned once, reused per tenant
         fb.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
-        fb.getJpaPropertyMap().put("hibernate.default_schema", schema);
+        if (qualifySchema) fb.getJpaPropertyMap().put("hibernate.default_schema", schema);
+        fb.getJpaPropertyMap().putAll(extraProps);
         fb.afterPropertiesSet();
         return fb.getObject();
     }
+
+    /**
+     * Lightweight proxy: every EntityManager it creates is a Hibernate session
+     * opened for {@code tenantId}; {@code close()} is a no-op so evicting a
+     * tenant never tears down the shared SessionFactory.
+     */
+    private static EntityManagerFactory tenantView(EntityManagerFactory target, String tenantId) {
+        return (EntityManagerFactory) Proxy.newProxyInstance(
+                EMFProvider.class.getClassLoader(),
+                new Class<?>[]{EntityManagerFactory.class},
+                new TenantBoundHandler(target, tenantId));
+    }
+
+    private record TenantBoundHandler(EntityManagerFactory target, String tenantId)
+            implements InvocationHandler {
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":   return proxy == args[0];
+                case "hashCode": return System.identityHashCode(proxy);
+                case "toString": return "TenantBoundEMF[" + tenantId + "]";
+                case "close":    return null;
+                case "createEntityManager": {
+                    var em = target.unwrap(SessionFactory.class)
+                            .withOptions()
+                            .tenantIdentifier((Object) tenantId)
+                            .openSession();
+                    if (args != null) {
+                        for (Object arg : args) {
+                            if (arg instanceof Map<?, ?> m) {
+                                ((Map<String, Object>) m).forEach(em::setProperty);
+                            } else if (arg != null && !(arg instanceof SynchronizationType)) {
+                                throw new IllegalArgumentException("Unsupported argument " + arg);
+                            }
+                        }
+                    }
+                    return em;
+                }
+                default:
+                    try {
+                        return method.invoke(target, args);
+                    } catch (InvocationTargetException ex) {
+                        throw ex.getTargetException();
+                    }
+            }
+        }
+    }
 }
@@ -1,6 +1,7 @@
 package org.zakariafarih.multitenancycore;
 
 import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
@@ -9,22 +10,34 @@ import org.springframework.stereotype.Component;
  * Resolves from
  *  • HTTP header "X-Tenant"
  *  • URI pattern /tenants/{id}/…
+ *
+ * The path segment is located by index scanning and looked up in the
+ * registry's id index, so a known tenant costs no substring.
  */
 @Component
 @Order(Ordered.HIGHEST_PRECEDENCE)   // try first
+@RequiredArgsConstructor
 public class HeaderPathTenantIdResolver implements TenantIdResolver {
 
     private static final String TENANT_HEADER = "X-Tenant";
+    private static final String PATH_PREFIX   = "/tenants/";
+
+    private final TenantRegistry registry;
 
     @Override
     public String resolveTenantId(HttpServletRequest req) {
         String id = req.getHeader(TENANT_HEADER);
         if (id != null && !id.isBlank()) return id;
 
-        String[] segments = req.getRequestURI().split("/");
-        if (segments.length > 2 && "tenants".equals(segments[1])) {
-            return segments[2];
-        }
-        return null;
+        String uri = req.getRequestURI();
+        if (!uri.startsWith(PATH_PREFIX)) return null;
+
+        int from = PATH_PREFIX.length();
+        int to   = uri.indexOf('/', from);
+        if (to < 0) to = uri.length();
+        if (to == from) return null;
+
+        String known = registry.canonicalId(uri, from, to);
+        return known != null ? known : uri.substring(from, to);
     }
 }
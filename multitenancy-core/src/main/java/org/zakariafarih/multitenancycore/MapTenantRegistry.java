@@ -0,0 +1,96 @@
+package org.zakariafarih.multitenancycore;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link TenantRegistry} holding the loaded {@link TenantProperties.TenantConfig}
+ * objects in a concurrent map.
+ *
+ * Runtime changes go through {@link #register} / {@link #unregister}, which
+ * also refresh the {@link TenantIdIndex} behind {@link #canonicalId} and
+ * {@link #contains}; {@link #getTenantMap()} is a read-only view.
+ */
+public class MapTenantRegistry implements TenantRegistry {
+
+    private final Map<String, TenantProperties.TenantConfig> tenantMap = new ConcurrentHashMap<>();
+    private final Map<String, TenantProperties.TenantConfig> readOnly  = Collections.unmodifiableMap(tenantMap);
+
+    private volatile TenantIdIndex ids = TenantIdIndex.EMPTY;
+
+    /** Loads every tenant descriptor found on the class-path. */
+    public MapTenantRegistry() {
+        this(new TenantDescriptorLoader().load());
+    }
+
+    public MapTenantRegistry(Collection<TenantProperties.TenantConfig> tenants) {
+        tenants.forEach(cfg -> tenantMap.put(cfg.getId(), cfg));
+        reindex();
+    }
+
+    @Override
+    public Map<String, TenantProperties.TenantConfig> getTenantMap() { return readOnly; }
+
+    @Override
+    public boolean contains(String tenantId) { return ids.find(tenantId) != null; }
+
+    @Override
+    public TenantProperties.TenantConfig get(String tenantId) {
+        TenantProperties.TenantConfig cfg = tenantMap.get(tenantId);
+        if (cfg == null) throw UnknownTenantException.of(tenantId);
+        return cfg;
+    }
+
+    @Override
+    public boolean register(TenantProperties.TenantConfig cfg) {
+        if (tenantMap.putIfAbsent(cfg.getId(), cfg) != null) return false;
+        reindex();
+        return true;
+    }
+
+    @Override
+    public List<TenantProperties.TenantConfig> registerAll(Collection<TenantProperties.TenantConfig> cfgs) {
+        List<TenantProperties.TenantConfig> registered = new ArrayList<>();
+        for (var cfg : cfgs) {
+            if (tenantMap.putIfAbsent(cfg.getId(), cfg) == null) registered.add(cfg);
+        }
+        if (!registered.isEmpty()) reindex();
+        return registered;
+    }
+
+    @Override
+    public TenantProperties.TenantConfig unregister(String tenantId) {
+        TenantProperties.TenantConfig removed = tenantMap.remove(tenantId);
+        if (removed != null) reindex();
+        return removed;
+    }
+
+    @Override
+    public void apply(Collection<TenantProperties.TenantConfig> upserts, Collection<String> removals) {
+        if (upserts.isEmpty() && removals.isEmpty()) return;
+        removals.forEach(tenantMap::remove);
+        upserts.forEach(cfg -> tenantMap.put(cfg.getId(), cfg));
+        reindex();
+    }
+
+    @Override
+    public String canonicalId(String tenantId) {
+        String canonical = ids.find(tenantId);
+        return canonical != null ? canonical : tenantId;
+    }
+
+    @Override
+    public String canonicalId(CharSequence chars, int from, int to) {
+        return ids.find(chars, from, to);
+    }
+
+    /* ——— internal ——— */
+
+    private synchronized void reindex() {
+        ids = new TenantIdIndex(List.copyOf(tenantMap.keySet()));
+    }
+}
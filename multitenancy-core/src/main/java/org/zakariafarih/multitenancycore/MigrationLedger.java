@@ -0,0 +1,97 @@
+package org.zakariafarih.multitenancycore;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process ledger of (tenant, schema, target) triples already migrated to the
+ * current migration scripts.
+ *
+ * The target is where the migrations actually ran – JDBC URL, user and target
+ * schema (see {@link #target}) – so migrating one database (e.g. a throw-away
+ * bootstrap pool) never marks another one (the tenant's real pool, a shared
+ * host schema) as current.
+ *
+ * The checksum of {@code classpath:db/migration/<schema>} is computed once per
+ * schema; a tenant whose recorded checksum matches skips Flyway entirely when
+ * its pool is evicted and rebuilt.
+ */
+@Slf4j
+public class MigrationLedger {
+
+    private final PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+
+    /* schema → checksum of its migration scripts */
+    private final Map<String, String> checksums = new ConcurrentHashMap<>();
+
+    /* tenant|schema|target → checksum the target was last migrated to */
+    private final Map<String, String> applied = new ConcurrentHashMap<>();
+
+    /** Identity of a migration target: database, the user connecting and the schema migrated into. */
+    public static String target(String jdbcUrl, String user, String targetSchema) {
+        return jdbcUrl + '|' + user + '|' + targetSchema;
+    }
+
+    public boolean isCurrent(String tenantId, String schema, String target) {
+        return checksum(schema).equals(applied.get(tenantId + '|' + schema + '|' + target));
+    }
+
+    public void markCurrent(String tenantId, String schema, String target) {
+        applied.put(tenantId + '|' + schema + '|' + target, checksum(schema));
+    }
+
+    /** Drops every entry of the tenant (e.g. after its database was removed). */
+    public void forget(String tenantId) {
+        applied.keySet().removeIf(k -> k.startsWith(tenantId + '|'));
+    }
+
+    /** {@link #forget(String)} for many tenants in a single pass over the ledger. */
+    public void forget(Collection<String> tenantIds) {
+        if (tenantIds.isEmpty()) return;
+        Set<String> ids = Set.copyOf(tenantIds);
+        applied.keySet().removeIf(k -> ids.contains(k.substring(0, k.indexOf('|'))));
+    }
+
+    public String checksum(String schema) {
+        return checksums.computeIfAbsent(schema, this::computeChecksum);
+    }
+
+    /* ——— internal ——— */
+
+    private String computeChecksum(String schema) {
+        try {
+            Resource[] scripts = resolver.getResources("classpath*:db/migration/" + schema + "/**/*");
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            var readable = Arrays.stream(scripts)
+                    .filter(Resource::isReadable)
+                    .filter(r -> r.getFilename() != null && !r.getFilename().isEmpty())
+                    .sorted(Comparator.comparing(Resource::getFilename))
+                    .toList();
+            for (Resource r : readable) {
+                md.update(r.getFilename().getBytes(StandardCharsets.UTF_8));
+                try (InputStream in = r.getInputStream()) {
+                    md.update(in.readAllBytes());
+                }
+            }
+            String sum = HexFormat.of().formatHex(md.digest());
+            log.debug("Migration checksum for schema {} over {} scripts: {}", schema, readable.size(), sum);
+            return sum;
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Failed to checksum migrations of schema " + schema, e);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package org.zakariafarih.multitenancycore;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Start-up bootstrap tunables, controlled via <pre>multitenancy.bootstrap.*</pre>.
+ */
+@Data
+@ConfigurationProperties(prefix = "multitenancy.bootstrap")
+public class MultitenancyBootstrapProperties {
+
+    /** Create & migrate every registered tenant at start-up. */
+    private boolean enabled = true;
+
+    /** Tenants bootstrapped concurrently (dedicated threads, not the common ForkJoinPool). */
+    private int parallelism = 8;
+
+    /** Upper bound of concurrent bootstraps against one database host. */
+    private int perHostConcurrency = 4;
+
+    /** BLOCKING: start-up waits for every tenant; DEFERRED: tenants bootstrap in the background. */
+    private Mode mode = Mode.BLOCKING;
+
+    /** DEFERRED only: how long a request waits for its (then prioritized) tenant before a 503. */
+    private Duration readyWait = Duration.ofSeconds(2);
+
+    /** DEFERRED only: Retry-After sent with the 503 for a tenant still being bootstrapped. */
+    private Duration retryAfter = Duration.ofSeconds(5);
+
+    public enum Mode { BLOCKING, DEFERRED }
+}
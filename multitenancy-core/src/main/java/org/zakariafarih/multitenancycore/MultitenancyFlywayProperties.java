@@ -12,4 +12,7 @@ public class MultitenancyFlywayProperties {
 
     /** Retries to acquire Flyway history table lock (0 = Flyway default). */
     private int lockRetryCount = 5;
+
+    /** Skip Flyway for tenants the in-process migration ledger already knows as current. */
+    private boolean ledgerEnabled = true;
 }
@@ -4,6 +4,8 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Global, application-wide pool and cache parameters.
@@ -14,12 +16,30 @@ import java.time.Duration;
 @ConfigurationProperties(prefix = "multitenancy.pool")
 public class MultitenancyPoolProperties {
 
-    /** Maximum Hikari pools kept in memory concurrently. */
+    /**
+     * Maximum tenant pools kept open concurrently. Enforced on its own, next
+     * to the {@code maxTenantWeight} bound on pools plus their EMFs.
+     */
     private int maxTenantPools = 200;
 
     /** LRU eviction timeout for an idle tenant pool / EMF / TxManager. */
     private Duration idleEviction = Duration.ofHours(2);
 
+    /**
+     * Weight a tenant-owned EntityManagerFactory adds to its tenant's cache unit
+     * (a pool weighs 1). Metamodel memory and rebuild time dwarf an idle pool's.
+     */
+    private int emfWeight = 4;
+
+    /** Longest an evicted pool may wait for its active connections before it is closed anyway. */
+    private Duration drainTimeout = Duration.ofSeconds(30);
+
+    /**
+     * Total weight of cached tenant units – pool plus attached EMFs
+     * (0 = {@code maxTenantPools × (1 + emfWeight)}).
+     */
+    private long maxTenantWeight = 0;
+
     /** Default maximumPoolSize for tenant Hikari pools (overridable per tenant). */
     private int defaultMaxPoolSize = 10;
 
@@ -31,4 +51,73 @@ public class MultitenancyPoolProperties {
 
     /** Pool size used by one-off DDL operations (TenantDatabaseCreator). */
     private int ddlPoolSize = 1;
+
+    /** DDL pools are kept per (host, port, database) and closed after this long unused. */
+    private Duration ddlPoolIdleTimeout = Duration.ofSeconds(30);
+
+    /** DDL pools kept open at most; the least recently used one is closed first. */
+    private int ddlPoolCacheSize = 16;
+
+    /** Database batch onboarding connects to on each tenant host to run CREATE DATABASE. */
+    private String maintenanceDatabase = "postgres";
+
+    /** Build tenant pools (Hikari + schema migration) on background threads, never on the request thread. */
+    private boolean asyncWarmup = false;
+
+    /** Threads used for background pool creation when {@code asyncWarmup} is on. */
+    private int warmupThreads = 4;
+
+    /** Number of most recently / frequently used tenants kept warm (at startup and after eviction). */
+    private int warmSetSize = 20;
+
+    /** How often the warm set is recomputed from pool-cache access statistics. */
+    private Duration warmSetRefresh = Duration.ofMinutes(1);
+
+    /** Optional file where the warm set survives restarts (empty = first tenants of the registry). */
+    private String warmSetFile;
+
+    /**
+     * Queue connection requests on a fair per-tenant semaphore sized to the pool
+     * (unset = on when {@code spring.threads.virtual.enabled=true}).
+     */
+    private Boolean connectionGate;
+
+    /** Longest a request waits for a tenant connection permit before failing. */
+    private Duration connectionGateTimeout = Duration.ofSeconds(30);
+
+    /** Connections all tenant pools on one database host may hold together (0 = unlimited). */
+    private int hostConnectionBudget = 0;
+
+    /** Per-host overrides of {@code hostConnectionBudget}, keyed "host:port" ("h2" for in-memory tenants). */
+    private Map<String, Integer> hostBudgets = new HashMap<>();
+
+    /** Periodically resize tenant pools from live Hikari metrics within the host budget. */
+    private boolean adaptiveSizing = false;
+
+    /** How often the adaptive controller re-reads pool metrics and resizes. */
+    private Duration adaptiveInterval = Duration.ofSeconds(10);
+
+    /** Smallest maximumPoolSize the adaptive controller shrinks a pool to. */
+    private int minPoolSize = 1;
+
+    /**
+     * {@code PER_TENANT}: one pool per tenant; {@code SHARED_HOST}: one pool per host and database, schema
+     * switched per checkout – migrations and entities must then be unqualified (no {@code clinic.} prefix).
+     */
+    private PoolMode mode = PoolMode.PER_TENANT;
+
+    /** Database shared by {@code SHARED_HOST} tenants that do not set their own {@code dbName}. */
+    private String sharedDatabase = "tenants";
+
+    public enum PoolMode { PER_TENANT, SHARED_HOST }
+
+    /** Capacity of the tenant unit cache in weight units. */
+    public long effectiveMaxTenantWeight() {
+        return maxTenantWeight > 0 ? maxTenantWeight : (long) maxTenantPools * (1 + emfWeight);
+    }
+
+    /** Effective budget of a database host (0 = unlimited). */
+    public int budgetFor(String hostKey) {
+        return hostBudgets.getOrDefault(hostKey, hostConnectionBudget);
+    }
 }
@@ -16,4 +16,10 @@ public class MultitenancyProps {
 
     /** Schemas owned by this micro-service (comma separated). */
     private String[] schemas  = { "public" };
+
+    /**
+     * Build the Hibernate metamodel once per schema and serve every tenant
+     * through a multi-tenant connection provider (instead of one EMF per tenant|schema).
+     */
+    private boolean sharedMetamodel = false;
 }
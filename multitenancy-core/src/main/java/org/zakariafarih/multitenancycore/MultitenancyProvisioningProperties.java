@@ -0,0 +1,29 @@
+package org.zakariafarih.multitenancycore;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * How new tenant databases get their tables, controlled via <pre>multitenancy.provisioning.*</pre>.
+ */
+@Data
+@ConfigurationProperties(prefix = "multitenancy.provisioning")
+public class MultitenancyProvisioningProperties {
+
+    /**
+     * MIGRATE: create an empty database and run every migration.
+     * TEMPLATE: clone a fully migrated template database – CREATE DATABASE … TEMPLATE on
+     * PostgreSQL, a replayed SCRIPT export for in-memory H2.
+     */
+    private Mode mode = Mode.MIGRATE;
+
+    /** Template databases are named {@code <prefix><schema-set version>}. */
+    private String templatePrefix = "tenant_template_";
+
+    /** How long to retry while a template is briefly in use by another session. */
+    private Duration templateBusyTimeout = Duration.ofSeconds(5);
+
+    public enum Mode { MIGRATE, TEMPLATE }
+}
@@ -0,0 +1,39 @@
+package org.zakariafarih.multitenancycore;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Tenant registry implementation, controlled via <pre>multitenancy.registry.*</pre>.
+ */
+@Data
+@ConfigurationProperties(prefix = "multitenancy.registry")
+public class MultitenancyRegistryProperties {
+
+    /** {@code MAP} keeps loaded descriptors as-is; {@code COMPACT} stores them column-wise (100k+ tenants). */
+    private Type type = Type.MAP;
+
+    /**
+     * Resource pattern of the descriptor files, e.g. {@code file:/etc/clinic/tenants-*.yml}
+     * (unset = every tenants-*.yml on the class-path, else tenants.yml).
+     */
+    private String descriptors;
+
+    /**
+     * Binary cache of the parsed descriptors, reused while no tenants*.yml
+     * changes (unset = always parse). Holds database passwords: keep it
+     * somewhere only the application can read.
+     */
+    private Path snapshotFile;
+
+    /** Reload tenants*.yml on the file system when they change (see TenantDescriptorReloader). */
+    private boolean watch = false;
+
+    /** Quiet period after the last file event before reloading, so an editor's save is one reload. */
+    private Duration watchDebounce = Duration.ofSeconds(1);
+
+    public enum Type { MAP, COMPACT }
+}
@@ -0,0 +1,26 @@
+package org.zakariafarih.multitenancycore;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Request-time tenant resolution, controlled via <pre>multitenancy.resolution.*</pre>.
+ */
+@Data
+@ConfigurationProperties(prefix = "multitenancy.resolution")
+public class MultitenancyResolutionProperties {
+
+    /** Answer 404 in TenantFilter for ids not in the registry, before any routing. */
+    private boolean rejectUnknown = true;
+
+    /** Unknown ids remembered at most (bounds the per-id rejection counters too). */
+    private int negativeCacheSize = 1_000;
+
+    /** Window during which rejections of one unknown id are counted. */
+    private Duration negativeCacheTtl = Duration.ofMinutes(1);
+
+    /** Rejections of one unknown id per window before answering 429 (0 = never). */
+    private int unknownRateLimit = 20;
+}
@@ -0,0 +1,88 @@
+package org.zakariafarih.multitenancycore;
+
+import org.springframework.util.AntPathMatcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Skip-list matcher compiled once from Ant-style patterns.
+ *
+ * {@code /prefix/**} and wildcard-free paths go into a character trie walked
+ * once per request URI – no allocation, no regex. Any other pattern falls back
+ * to {@link AntPathMatcher}, so the semantics stay those of the original list.
+ */
+final class PathPrefixTrie {
+
+    private static final class Node {
+        char[] keys     = new char[0];
+        Node[] children = new Node[0];
+        boolean prefix;     // "/x/**": matches "/x" and "/x/…"
+        boolean exact;      // "/x":    matches "/x" only
+
+        Node child(char c) {
+            for (int i = 0; i < keys.length; i++) if (keys[i] == c) return children[i];
+            return null;
+        }
+
+        Node addChild(char c) {
+            Node n = child(c);
+            if (n != null) return n;
+            keys     = Arrays.copyOf(keys, keys.length + 1);
+            children = Arrays.copyOf(children, children.length + 1);
+            keys[keys.length - 1] = c;
+            return children[children.length - 1] = new Node();
+        }
+    }
+
+    private final Node           root     = new Node();
+    private final List<String>   fallback = new ArrayList<>();
+    private final AntPathMatcher matcher  = new AntPathMatcher();
+
+    PathPrefixTrie(List<String> patterns) {
+        for (String p : patterns) {
+            if (p.endsWith("/**") && isLiteral(p, p.length() - 3)) {
+                insert(p, p.length() - 3).prefix = true;
+            } else if (isLiteral(p, p.length())) {
+                insert(p, p.length()).exact = true;
+            } else {
+                fallback.add(p);
+            }
+        }
+    }
+
+    boolean matches(String path) {
+        Node node = root;
+        int len = path.length();
+        for (int i = 0; ; i++) {
+            if (node.prefix && (i == len || path.charAt(i) == '/')) return true;
+            if (i == len) {
+                if (node.exact) return true;
+                break;
+            }
+            node = node.child(path.charAt(i));
+            if (node == null) break;
+        }
+        for (String p : fallback) {
+            if (matcher.match(p, path)) return true;
+        }
+        return false;
+    }
+
+    /* ——— internal ——— */
+
+    private Node insert(String pattern, int end) {
+        Node node = root;
+        for (int i = 0; i < end; i++) node = node.addChild(pattern.charAt(i));
+        return node;
+    }
+
+    private static boolean isLiteral(String p, int end) {
+        for (int i = 0; i < end; i++) {
+            char c = p.charAt(i);
+            if (c == '*' || c == '?' || c == '{') return false;
+        }
+        return true;
+    }
+}
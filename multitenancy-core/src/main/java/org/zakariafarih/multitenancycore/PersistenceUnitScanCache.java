@@ -0,0 +1,37 @@
+package org.zakariafarih.multitenancycore;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.orm.jpa.persistenceunit.PersistenceManagedTypes;
+import org.springframework.orm.jpa.persistenceunit.PersistenceManagedTypesScanner;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Scans entity packages once per package set and hands the resulting
+ * {@link PersistenceManagedTypes} to every EntityManagerFactory build.
+ *
+ * A {@code PersistenceUnitManager} cannot be shared between factories (each
+ * unit info can be obtained only once), so the cached managed types are fed
+ * to each factory's own unit manager instead – only the DataSource-specific
+ * part is built per tenant.
+ */
+@Slf4j
+public class PersistenceUnitScanCache {
+
+    private final PersistenceManagedTypesScanner scanner =
+            new PersistenceManagedTypesScanner(new DefaultResourceLoader());
+
+    private final Map<String, PersistenceManagedTypes> cache = new ConcurrentHashMap<>();
+
+    public PersistenceManagedTypes get(String... packages) {
+        String key = String.join(",", Arrays.stream(packages).map(String::trim).sorted().toList());
+        return cache.computeIfAbsent(key, k -> {
+            PersistenceManagedTypes types = scanner.scan(packages);
+            log.info("Scanned {} managed classes in {}", types.getManagedClassNames().size(), k);
+            return types;
+        });
+    }
+}
@@ -1,32 +1,79 @@
 package org.zakariafarih.multitenancycore;
 
+import com.zaxxer.hikari.HikariDataSource;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.flywaydb.core.Flyway;
 
 import javax.sql.DataSource;
+import java.sql.SQLException;
 
 /**
  * Runs Flyway baseline + migrate for the given service schema.
+ * Tenants already recorded as current in the {@link MigrationLedger}
+ * for the same target (Hikari JDBC URL, user, target schema) skip Flyway
+ * altogether; DataSources that are no Hikari pool are always migrated.
  */
 @Slf4j
 @RequiredArgsConstructor
 public class SchemaGenerator {
 
     private final MultitenancyFlywayProperties props;
+    private final MigrationLedger              ledger;
+
+    public SchemaGenerator(MultitenancyFlywayProperties props) {
+        this(props, new MigrationLedger());
+    }
+
+    /** Ledger-aware variant: no Flyway round-trip if the tenant is already current. */
+    public void migrate(String tenantId, DataSource tenantDs, String schema) {
+        migrate(tenantId, tenantDs, schema, schema);
+    }
+
+    /** Applies the migrations of service {@code schema} into {@code targetSchema} (shared-host tenants). */
+    public void migrate(String tenantId, DataSource tenantDs, String schema, String targetSchema) {
+        String target = props.isLedgerEnabled() ? target(tenantDs, targetSchema) : null;
+        if (target != null && ledger.isCurrent(tenantId, schema, target)) {
+            log.debug("Schema {} of tenant {} already current – Flyway skipped", schema, tenantId);
+            return;
+        }
+        migrate(tenantDs, schema, targetSchema);
+        if (target != null) ledger.markCurrent(tenantId, schema, target);
+    }
 
     public void migrate(DataSource tenantDs, String schema) {
-        log.info("Migrating schema {}", schema);
+        migrate(tenantDs, schema, schema);
+    }
+
+    public void migrate(DataSource tenantDs, String schema, String targetSchema) {
+        log.info("Migrating schema {}{}", schema, schema.equals(targetSchema) ? "" : " into " + targetSchema);
 
         String location = "classpath:db/migration/" + schema;
 
         Flyway.configure()
                 .dataSource(tenantDs)
-                .schemas(schema)
+                .schemas(targetSchema)
+                // several services in one tenant schema – keep their histories apart
+                .table(schema.equals(targetSchema) ? "flyway_schema_history" : "flyway_schema_history_" + schema)
                 .locations(location)
                 .baselineOnMigrate(true)
                 .lockRetryCount(props.getLockRetryCount())
                 .load()
                 .migrate();
     }
+
+    public MigrationLedger getLedger() { return ledger; }
+
+    /* ——— internal ——— */
+
+    /** Ledger target of a (possibly wrapped) Hikari pool; {@code null} when unknown. */
+    private static String target(DataSource ds, String targetSchema) {
+        try {
+            if (!ds.isWrapperFor(HikariDataSource.class)) return null;
+            HikariDataSource pool = ds.unwrap(HikariDataSource.class);
+            return MigrationLedger.target(pool.getJdbcUrl(), pool.getUsername(), targetSchema);
+        } catch (SQLException ex) {
+            return null;
+        }
+    }
 }
@@ -0,0 +1,281 @@
+package org.zakariafarih.multitenancycore;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tenant databases cloned from a fully migrated template
+ * ({@code multitenancy.provisioning.mode=TEMPLATE}).
+ *
+ * One template exists per schema-set version – the migration checksums of
+ * every service schema – named {@code <template-prefix><version>}. It is
+ * built once (under a temporary name, then renamed, so concurrent instances
+ * never clone a half-migrated one) and every new tenant database is created
+ * with {@code CREATE DATABASE … TEMPLATE}. The clone already holds every
+ * table and Flyway history row, so its ledger entries are marked current and
+ * onboarding time no longer depends on how many migrations exist.
+ *
+ * In-memory H2 databases (tests, local development) have no CREATE DATABASE:
+ * the template is migrated once in a throw-away H2 database, exported with
+ * {@code SCRIPT} and that script is replayed into each new tenant database.
+ */
+@Slf4j
+public class TemplateDatabaseProvisioner {
+
+    private static final String DUPLICATE_DATABASE = "42P04";
+    private static final String OBJECT_IN_USE      = "55006";
+    private static final String NO_PRIVILEGE       = "42501";
+
+    private final String                             adminUsername;
+    private final String                             adminPassword;
+    private final SchemaGenerator                    schemaGen;
+    private final MultitenancyProvisioningProperties props;
+    private final Map<String, String>                templates = new ConcurrentHashMap<>();   // version → database
+    private final Map<String, List<String>>          scripts   = new ConcurrentHashMap<>();   // version → H2 export
+
+    public TemplateDatabaseProvisioner(String adminUsername, String adminPassword,
+                                       SchemaGenerator schemaGen, MultitenancyProvisioningProperties props) {
+        this.adminUsername = adminUsername;
+        this.adminPassword = adminPassword;
+        this.schemaGen     = schemaGen;
+        this.props         = props;
+    }
+
+    /**
+     * Creates {@code dbName} as a clone of the current template, building the
+     * template first if this schema-set version has none yet.
+     *
+     * @return {@code true} if cloned; {@code false} if the database already
+     *         existed, may not be created by the admin user or the template
+     *         stayed busy – the caller then migrates as usual
+     */
+    public boolean createDatabase(Statement admin, TenantProperties.TenantConfig cfg,
+                                  String dbName, String[] schemas) throws SQLException {
+        String template = template(admin, cfg, schemas);
+        try {
+            whileBusy(() -> admin.executeUpdate("CREATE DATABASE " + dbName + " TEMPLATE " + template));
+            log.info("Database {} cloned from {}", dbName, template);
+            return true;
+        } catch (SQLException ex) {
+            if (DUPLICATE_DATABASE.equals(ex.getSQLState()) || NO_PRIVILEGE.equals(ex.getSQLState())) {
+                log.debug("CREATE DATABASE {} skipped: {}", dbName, ex.getMessage());
+                return false;
+            }
+            if (!OBJECT_IN_USE.equals(ex.getSQLState())) throw ex;
+            log.warn("Template {} stayed in use – creating {} empty and migrating instead", template, dbName);
+            admin.executeUpdate("CREATE DATABASE " + dbName);
+            return false;
+        }
+    }
+
+    /**
+     * H2: replays the template's {@code SCRIPT} export into an in-memory
+     * tenant database, building and exporting the template on first use.
+     *
+     * @return {@code true} if cloned; {@code false} if the service schemas
+     *         already hold tables – the caller then migrates as usual
+     */
+    public boolean cloneInMemory(Statement tenant, String[] schemas) throws SQLException {
+        if (hasTables(tenant.getConnection(), schemas)) return false;
+
+        List<String> script = scripts.get(version(schemas));
+        if (script == null) script = export(schemas);
+        for (String sql : script) tenant.addBatch(sql);
+        tenant.executeBatch();
+        return true;
+    }
+
+    /** Records a cloned tenant's own pool as migrated, so {@link SchemaGenerator} skips Flyway for it. */
+    public void markCurrent(TenantProperties.TenantConfig cfg, String[] schemas) {
+        String url = cfg.jdbcUrl(cfg.databaseName());
+        for (String schema : schemas) {
+            schemaGen.getLedger().markCurrent(cfg.getId(), schema,
+                    MigrationLedger.target(url, cfg.poolUser(), schema));
+        }
+    }
+
+    /* ——— template ——— */
+
+    private String template(Statement admin, TenantProperties.TenantConfig cfg, String[] schemas) throws SQLException {
+        String version = version(schemas);
+        String known = templates.get(version);
+        if (known != null) return known;
+
+        synchronized (this) {
+            known = templates.get(version);
+            if (known != null) return known;
+
+            String name = props.getTemplatePrefix() + version;
+            if (!exists(admin.getConnection(), name)) build(admin, cfg, name, schemas);
+            templates.put(version, name);
+            return name;
+        }
+    }
+
+    private void build(Statement admin, TenantProperties.TenantConfig cfg, String name, String[] schemas)
+            throws SQLException {
+        String building = name + "_" + Long.toHexString(System.nanoTime() & 0xffffffL);
+        long start = System.nanoTime();
+        admin.executeUpdate("CREATE DATABASE " + building);
+        try {
+            try (HikariDataSource ds = templatePool(cfg, building)) {
+                try (Connection c = ds.getConnection(); Statement s = c.createStatement()) {
+                    for (String schema : schemas) s.execute("CREATE SCHEMA IF NOT EXISTS " + schema);
+                }
+                for (String schema : schemas) schemaGen.migrate(ds, schema);
+            }
+            whileBusy(() -> admin.executeUpdate("ALTER DATABASE " + building + " RENAME TO " + name));
+            log.info("Template database {} built in {} ms", name, (System.nanoTime() - start) / 1_000_000);
+        } catch (SQLException | RuntimeException ex) {
+            dropQuietly(admin, building);
+            if (ex instanceof SQLException sql && DUPLICATE_DATABASE.equals(sql.getSQLState())) {
+                log.info("Template database {} was built concurrently – using it", name);
+                return;
+            }
+            throw ex;
+        }
+        try {
+            admin.executeUpdate("ALTER DATABASE " + name + " WITH ALLOW_CONNECTIONS false");   // nobody can block cloning
+        } catch (SQLException ex) {
+            log.debug("Could not close {} for connections: {}", name, ex.getMessage());
+        }
+    }
+
+    /** Migrates a throw-away H2 database (closed with its pool) and keeps its script. */
+    private synchronized List<String> export(String[] schemas) throws SQLException {
+        String version = version(schemas);
+        List<String> known = scripts.get(version);
+        if (known != null) return known;
+
+        long start = System.nanoTime();
+        List<String> script = new ArrayList<>();
+        HikariConfig hc = new HikariConfig();
+        hc.setJdbcUrl("jdbc:h2:mem:%s%s;MODE=PostgreSQL".formatted(props.getTemplatePrefix(), version));
+        hc.setUsername("sa");
+        hc.setPassword("");
+        hc.setPoolName("template-h2-" + version);
+        hc.setMaximumPoolSize(2);
+        try (HikariDataSource ds = new HikariDataSource(hc)) {
+            try (Connection c = ds.getConnection(); Statement s = c.createStatement()) {
+                for (String schema : schemas) s.execute("CREATE SCHEMA IF NOT EXISTS " + schema);
+            }
+            for (String schema : schemas) schemaGen.migrate(ds, schema);
+            try (Connection c = ds.getConnection(); Statement s = c.createStatement();
+                 ResultSet rs = s.executeQuery("SCRIPT NOPASSWORDS NOSETTINGS SCHEMA " + exported(c, schemas))) {
+                while (rs.next()) script.add(rs.getString(1));
+            }
+        }
+        log.info("H2 template {}{} exported ({} statements) in {} ms", props.getTemplatePrefix(), version,
+                script.size(), (System.nanoTime() - start) / 1_000_000);
+        scripts.put(version, List.copyOf(script));
+        return script;
+    }
+
+    private HikariDataSource templatePool(TenantProperties.TenantConfig cfg, String db) {
+        HikariConfig hc = new HikariConfig();
+        hc.setJdbcUrl("jdbc:postgresql://%s:%d/%s".formatted(cfg.getHost(), cfg.getPort(), db));
+        hc.setUsername(adminUsername);
+        hc.setPassword(adminPassword);
+        hc.setPoolName("template-" + db);
+        hc.setMaximumPoolSize(2);                // Flyway takes a second connection for its lock
+        hc.setMinimumIdle(0);
+        return new HikariDataSource(hc);
+    }
+
+    /** Schema-set version: digest over every schema's migration checksum. */
+    private String version(String[] schemas) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            for (String schema : Arrays.stream(schemas).sorted().toList()) {
+                md.update(schema.getBytes(StandardCharsets.UTF_8));
+                md.update(schemaGen.getLedger().checksum(schema).getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(md.digest()).substring(0, 12);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /* ——— helpers ——— */
+
+    private interface Ddl { void run() throws SQLException; }
+
+    /** Retries while the database is briefly held by another session (e.g. a pool still closing). */
+    private void whileBusy(Ddl ddl) throws SQLException {
+        long deadline = System.nanoTime() + props.getTemplateBusyTimeout().toNanos();
+        while (true) {
+            try {
+                ddl.run();
+                return;
+            } catch (SQLException ex) {
+                if (!OBJECT_IN_USE.equals(ex.getSQLState()) || System.nanoTime() > deadline) throw ex;
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw ex;
+                }
+            }
+        }
+    }
+
+    private static boolean exists(Connection c, String db) throws SQLException {
+        try (PreparedStatement q = c.prepareStatement("SELECT 1 FROM pg_database WHERE datname = ?")) {
+            q.setString(1, db);
+            try (ResultSet rs = q.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /**
+     * Flyway quotes the schema it keeps its history in, so H2 holds both
+     * {@code CLINIC} (the migrations' tables) and {@code "clinic"} (history).
+     */
+    private static String exported(Connection c, String[] schemas) throws SQLException {
+        List<String> names = new ArrayList<>();
+        try (PreparedStatement q = c.prepareStatement(
+                "SELECT SCHEMA_NAME FROM INFORMATION_SCHEMA.SCHEMATA WHERE UPPER(SCHEMA_NAME) = UPPER(?)")) {
+            for (String schema : schemas) {
+                q.setString(1, schema);
+                try (ResultSet rs = q.executeQuery()) {
+                    while (rs.next()) names.add('"' + rs.getString(1).replace("\"", "\"\"") + '"');
+                }
+            }
+        }
+        return String.join(", ", names);
+    }
+
+    private static boolean hasTables(Connection c, String[] schemas) throws SQLException {
+        try (PreparedStatement q = c.prepareStatement(
+                "SELECT 1 FROM INFORMATION_SCHEMA.TABLES WHERE UPPER(TABLE_SCHEMA) = UPPER(?)")) {
+            for (String schema : schemas) {
+                q.setString(1, schema);
+                try (ResultSet rs = q.executeQuery()) {
+                    if (rs.next()) return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static void dropQuietly(Statement admin, String db) {
+        try {
+            admin.executeUpdate("DROP DATABASE IF EXISTS " + db);
+        } catch (SQLException ex) {
+            log.warn("Could not drop unfinished template {} – drop it manually", db, ex);
+        }
+    }
+}
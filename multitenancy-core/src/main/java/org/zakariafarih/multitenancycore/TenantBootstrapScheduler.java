@@ -0,0 +1,171 @@
+package org.zakariafarih.multitenancycore;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Dedicated executor for tenant provisioning work.
+ *
+ *  • fixed number of worker threads ({@code parallelism})
+ *  • at most {@code perHostConcurrency} tasks per database host at a time
+ *  • higher {@link TenantProperties.TenantConfig#getPriority() priority}
+ *    first, FIFO within a priority; a worker skips tasks whose host is
+ *    saturated so other hosts keep making progress
+ */
+public class TenantBootstrapScheduler implements AutoCloseable {
+
+    private record Task(String tenantId, String host, int priority, long seq,
+                        Runnable work, CompletableFuture<Void> done) {}
+
+    private static final Comparator<Task> ORDER = Comparator
+            .comparingInt(Task::priority).reversed()
+            .thenComparingLong(Task::seq);
+
+    private final int                  perHostConcurrency;
+    private final ReentrantLock        lock    = new ReentrantLock();
+    private final Condition            changed = lock.newCondition();
+    private final TreeSet<Task>        queue   = new TreeSet<>(ORDER);
+    private final Map<String, Integer> running = new HashMap<>();
+    private final AtomicLong           seq     = new AtomicLong();
+    private final List<Thread>         workers = new ArrayList<>();
+    private volatile boolean           closed;
+
+    public TenantBootstrapScheduler(String name, int parallelism, int perHostConcurrency) {
+        this.perHostConcurrency = Math.max(1, perHostConcurrency);
+        for (int i = 0; i < Math.max(1, parallelism); i++) {
+            workers.add(Thread.ofPlatform().name(name + "-" + i).daemon(true).start(this::workLoop));
+        }
+    }
+
+    /** Queues {@code work} for the given tenant; the future completes when it ran (or failed). */
+    public CompletableFuture<Void> submit(TenantProperties.TenantConfig cfg, Runnable work) {
+        var task = new Task(cfg.getId(), cfg.hostKey(), cfg.getPriority(),
+                seq.incrementAndGet(), work, new CompletableFuture<>());
+        lock.lock();
+        try {
+            if (closed) throw new IllegalStateException("Bootstrap scheduler is closed");
+            queue.add(task);
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+        return task.done();
+    }
+
+    /**
+     * Moves a still-queued tenant to the head of the queue.
+     * @return the pending future, or {@code null} if the tenant is not queued
+     */
+    public CompletableFuture<Void> prioritize(String tenantId) {
+        lock.lock();
+        try {
+            for (Task t : queue) {
+                if (t.tenantId().equals(tenantId)) {
+                    queue.remove(t);
+                    queue.add(new Task(t.tenantId(), t.host(), Integer.MAX_VALUE,
+                            seq.incrementAndGet(), t.work(), t.done()));
+                    changed.signal();
+                    return t.done();
+                }
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops the tenant's tasks that have not started yet and cancels their futures.
+     * @return {@code true} if any was still queued
+     */
+    public boolean cancel(String tenantId) {
+        List<Task> dropped = new ArrayList<>();
+        lock.lock();
+        try {
+            for (Iterator<Task> it = queue.iterator(); it.hasNext(); ) {
+                Task t = it.next();
+                if (t.tenantId().equals(tenantId)) {
+                    it.remove();
+                    dropped.add(t);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        dropped.forEach(t -> t.done().cancel(false));     // callbacks run outside the lock
+        return !dropped.isEmpty();
+    }
+
+    /** Tasks not yet started. */
+    public int pending() {
+        lock.lock();
+        try { return queue.size(); } finally { lock.unlock(); }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            queue.forEach(t -> t.done().cancel(false));
+            queue.clear();
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        workers.forEach(Thread::interrupt);
+    }
+
+    /* ——— internal ——— */
+
+    private void workLoop() {
+        try {
+            Task task;
+            while ((task = next()) != null) {
+                try {
+                    task.work().run();
+                    task.done().complete(null);
+                } catch (Throwable ex) {
+                    task.done().completeExceptionally(ex);
+                } finally {
+                    release(task.host());
+                }
+            }
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Task next() throws InterruptedException {
+        lock.lock();
+        try {
+            while (!closed) {
+                for (Iterator<Task> it = queue.iterator(); it.hasNext(); ) {
+                    Task t = it.next();
+                    if (running.getOrDefault(t.host(), 0) < perHostConcurrency) {
+                        it.remove();
+                        running.merge(t.host(), 1, Integer::sum);
+                        return t;
+                    }
+                }
+                changed.await();
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(String host) {
+        lock.lock();
+        try {
+            running.merge(host, -1, (a, b) -> a + b == 0 ? null : a + b);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -1,68 +1,223 @@
 package org.zakariafarih.multitenancycore;
 
-import jakarta.annotation.PostConstruct;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.SmartInitializingSingleton;
 import org.zakariafarih.multitenancycore.TenantAuditLog.EventType;
-import org.zakariafarih.multitenancycore.TenantAuditLogger;
 
 import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Same responsibilities as before, now with:
  *  • per-step audit logging
  *  • rollback of half-created tenants
  *  • basic retry on transient errors (hook ready)
+ *  • a dedicated {@link TenantBootstrapScheduler}: bounded parallelism,
+ *    per-host caps and priority tiers instead of the common ForkJoinPool
+ *  • progress / ETA gauges ({@code tenant.bootstrap.*})
+ *  • DEFERRED mode: start-up returns immediately and requests for a tenant
+ *    still in the queue bump it to the front (see {@link #awaitReady})
  */
 @Slf4j
-@RequiredArgsConstructor
-public class TenantBootstrapper implements SmartInitializingSingleton {
+public class TenantBootstrapper implements SmartInitializingSingleton, DisposableBean {
 
     private final TenantRegistry        registry;
     private final TenantDatabaseCreator dbCreator;
     private final java.util.function.Function<String, DataSource> dsFactory;
     private final SchemaGenerator       schemaGen;
     private final String[]              schemasForThisService;
-
-    /* NEW */
-    private final TenantAuditLogger audit;
+    private final TenantAuditLogger     audit;
+
+    private final MultitenancyBootstrapProperties props;
+    private final TenantBootstrapScheduler        scheduler;
+
+    /* tenants queued or running – removed once their bootstrap finished */
+    private final Map<String, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+
+    /* progress */
+    private final AtomicInteger total     = new AtomicInteger();
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger failed    = new AtomicInteger();
+    private volatile long       startedNanos;
+
+    public TenantBootstrapper(TenantRegistry                  registry,
+                              TenantDatabaseCreator           dbCreator,
+                              java.util.function.Function<String, DataSource> dsFactory,
+                              SchemaGenerator                 schemaGen,
+                              String[]                        schemasForThisService,
+                              TenantAuditLogger               audit,
+                              MultitenancyBootstrapProperties props,
+                              MeterRegistry                   meters) {
+
+        this.registry              = registry;
+        this.dbCreator             = dbCreator;
+        this.dsFactory             = dsFactory;
+        this.schemaGen             = schemaGen;
+        this.schemasForThisService = schemasForThisService;
+        this.audit                 = audit;
+        this.props                 = props;
+        this.scheduler             = new TenantBootstrapScheduler(
+                "tenant-bootstrap", props.getParallelism(), props.getPerHostConcurrency());
+
+        Gauge.builder("tenant.bootstrap.total", total, AtomicInteger::get)
+                .description("Tenants scheduled for bootstrap").register(meters);
+        Gauge.builder("tenant.bootstrap.completed", completed, AtomicInteger::get)
+                .description("Tenants bootstrapped successfully").register(meters);
+        Gauge.builder("tenant.bootstrap.failed", failed, AtomicInteger::get)
+                .description("Tenants whose bootstrap failed").register(meters);
+        Gauge.builder("tenant.bootstrap.eta", this, TenantBootstrapper::etaSeconds)
+                .description("Estimated seconds until every scheduled tenant is bootstrapped")
+                .baseUnit("seconds").register(meters);
+    }
 
     @Override
     public void afterSingletonsInstantiated() {
-        registry.getTenantMap().values().parallelStream().forEach(cfg -> {
-            String tenantId = cfg.getId();
-            boolean dbCreated = false;
-            try {
-                dbCreator.createDatabaseAndSchemaIfNotExists(cfg, schemasForThisService);
-                dbCreated = true;
-                audit.logSuccess(tenantId, EventType.DB_CREATE);
-
-                DataSource tenantDs;
-                try {
-                    tenantDs = dsFactory.apply(tenantId);
-                } catch (UnsupportedOperationException ignored) {
-                    tenantDs = tempDataSource(cfg);
-                }
-                for (String schema : schemasForThisService) {
-                    schemaGen.migrate(tenantDs, schema);
-                }
-                audit.logSuccess(tenantId, EventType.SCHEMA_MIGRATE);
-
-                audit.logSuccess(tenantId, EventType.ONBOARDING_SUCCESS);
-                log.info("✅  Tenant {} onboarded", tenantId);
-
-            } catch (Exception ex) {
-                audit.logFailure(tenantId, EventType.ONBOARDING_ERROR, ex.getMessage());
-                log.error("❌  Tenant {} bootstrap failed – attempting rollback", tenantId, ex);
-
-                rollbackIfNeeded(cfg, dbCreated);
-            }
+        var tenants = registry.getTenantMap().values();
+        startedNanos = System.nanoTime();
+
+        var all = submit(tenants).handle((v, ex) -> {
+            log.info("Bootstrapped {} tenants in {} ms ({} failed)", tenants.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedNanos), failed.get());
+            return v;
         });
+
+        if (props.getMode() == MultitenancyBootstrapProperties.Mode.BLOCKING) {
+            all.join();
+        } else {
+            log.info("Deferred bootstrap: {} tenants continue in the background", tenants.size());
+        }
+    }
+
+    /**
+     * Queues tenants registered after start-up (e.g. by a descriptor reload)
+     * on the same scheduler; {@link #awaitReady} covers them too.
+     *
+     * @return completes once every one of them finished, successfully or not
+     */
+    public CompletableFuture<Void> submit(Collection<TenantProperties.TenantConfig> tenants) {
+        total.addAndGet(tenants.size());
+
+        List<CompletableFuture<Void>> queued = new ArrayList<>(tenants.size());
+        for (var cfg : tenants) {
+            String id = cfg.getId();
+            CompletableFuture<Void> f = scheduler.submit(cfg, () -> bootstrap(cfg));
+            inFlight.put(id, f);
+            queued.add(f.whenComplete((v, ex) -> inFlight.remove(id, f)));
+        }
+        return CompletableFuture.allOf(queued.toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Drops tenants unregistered while still queued (e.g. removed by a
+     * descriptor reload), so no database, migration or pool is built for
+     * them afterwards. One already running finishes; a task that starts
+     * after the removal skips itself.
+     *
+     * @return how many of them were still queued
+     */
+    public int cancel(Collection<String> tenantIds) {
+        int cancelled = 0;
+        for (String id : tenantIds) {
+            if (scheduler.cancel(id)) cancelled++;
+        }
+        total.addAndGet(-cancelled);
+        if (cancelled > 0) log.info("Cancelled the queued bootstrap of {} removed tenants", cancelled);
+        return cancelled;
+    }
+
+    /**
+     * @return {@code true} once the tenant is bootstrapped (or was never scheduled);
+     *         otherwise the tenant is moved to the front of the queue and the
+     *         caller waits up to {@code multitenancy.bootstrap.ready-wait}
+     */
+    public boolean awaitReady(String tenantId) {
+        if (inFlight.isEmpty()) return true;
+        CompletableFuture<Void> pending = inFlight.get(tenantId);
+        if (pending == null || pending.isDone()) return true;
+
+        if (scheduler.prioritize(tenantId) != null) {
+            log.info("Tenant {} requested before bootstrap – prioritized", tenantId);
+        }
+        try {
+            pending.get(props.getReadyWait().toMillis(), TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException ex) {
+            return false;
+        } catch (ExecutionException | CancellationException ex) {
+            return true;    // failed or cancelled bootstrap – let the request surface the real error
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /** Retry-After hint (seconds) for requests rejected by {@link #awaitReady}. */
+    public long retryAfterSeconds() { return props.getRetryAfter().toSeconds(); }
+
+    @Override
+    public void destroy() {
+        scheduler.close();
     }
 
     /* ——— helpers ——— */
 
+    private void bootstrap(TenantProperties.TenantConfig cfg) {
+        String tenantId = cfg.getId();
+        if (!registry.contains(tenantId)) {          // removed after the task left the queue
+            total.decrementAndGet();
+            log.info("Tenant {} was removed before its bootstrap – skipped", tenantId);
+            return;
+        }
+        boolean dbCreated = false;
+        DataSource tempDs = null;
+        try {
+            dbCreator.createDatabaseAndSchemaIfNotExists(cfg, schemasForThisService);
+            dbCreated = true;
+            audit.logSuccess(tenantId, EventType.DB_CREATE);
+
+            DataSource tenantDs;
+            try {
+                tenantDs = dsFactory.apply(tenantId);
+            } catch (UnsupportedOperationException ignored) {
+                tenantDs = tempDs = tempDataSource(cfg);
+            }
+            for (String schema : schemasForThisService) {
+                schemaGen.migrate(tenantId, tenantDs, schema);
+            }
+            audit.logSuccess(tenantId, EventType.SCHEMA_MIGRATE);
+
+            audit.logSuccess(tenantId, EventType.ONBOARDING_SUCCESS);
+            completed.incrementAndGet();
+            log.info("✅  Tenant {} onboarded", tenantId);
+
+        } catch (Exception ex) {
+            failed.incrementAndGet();
+            audit.logFailure(tenantId, EventType.ONBOARDING_ERROR, ex.getMessage());
+            log.error("❌  Tenant {} bootstrap failed – attempting rollback", tenantId, ex);
+
+            rollbackIfNeeded(cfg, dbCreated);
+        } finally {
+            if (tempDs instanceof com.zaxxer.hikari.HikariDataSource hds) hds.close();
+        }
+    }
+
+    private double etaSeconds() {
+        int done = completed.get() + failed.get();
+        int remaining = total.get() - done;
+        if (remaining <= 0) return 0;
+        if (done == 0) return Double.NaN;
+        double elapsed = (System.nanoTime() - startedNanos) / 1e9;
+        return elapsed / done * remaining;
+    }
+
     private void rollbackIfNeeded(TenantProperties.TenantConfig cfg, boolean dbCreated) {
         if (!dbCreated) return;
 
@@ -70,6 +225,7 @@ public class TenantBootstrapper implements SmartInitializingSingleton {
              java.sql.Statement  s = c.createStatement()) {
 
             s.executeUpdate("DROP DATABASE IF EXISTS " + cfg.getDbName());
+            schemaGen.getLedger().forget(cfg.getId());
             log.info("Rolled back DB {}", cfg.getDbName());
 
         } catch (Exception ex) {
@@ -78,6 +234,8 @@ public class TenantBootstrapper implements SmartInitializingSingleton {
         }
     }
 
+    /* Throw-away H2 pool: the ledger records it under its own URL, so the
+       tenant's real pool (Postgres, shared host) is still migrated on first use. */
     private javax.sql.DataSource tempDataSource(TenantProperties.TenantConfig cfg) {
         com.zaxxer.hikari.HikariConfig hc = new com.zaxxer.hikari.HikariConfig();
         String db = cfg.getDbName() != null ? cfg.getDbName() : cfg.getId();
@@ -1,28 +1,261 @@
 package org.zakariafarih.multitenancycore;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
 /**
- * Thread-local holder for the current tenant id.
- * Adds a getRequired() helper so callers can fail fast,
- * and is package-private to avoid misuse from outside the core package.
+ * Holder for the current tenant id.
+ * Adds a getRequired() helper so callers can fail fast.
+ *
+ * {@link #set}/{@link #clear} bind the id to the current thread. Scoped
+ * binding ({@link #runWith}, {@link #callWith}, {@link #open}) restores the
+ * previous value on exit, so nested calls and pooled / virtual threads never
+ * leak or lose a tenant id. Where the runtime offers {@code ScopedValue}
+ * (Java 25+, or Java 21+ with {@code --enable-preview}) {@link #runWith} and
+ * {@link #callWith} bind through it instead, and {@code StructuredTaskScope}
+ * subtasks forked inside them inherit the tenant; elsewhere they fall back to
+ * the thread-local. Run a scope under {@code runWith(TenantContext.get(), …)}
+ * to hand a request's tenant to its forks.
+ *
+ * {@link #wrap} and {@link #propagating} carry the id across thread hops
+ * (CompletableFuture, @Async, forked subtasks). {@link #registerContextPropagation}
+ * makes it known to Micrometer's context-propagation library, which Reactor's
+ * automatic context propagation uses to restore it on every operator.
  */
 public final class TenantContext {
 
-    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+    /** Key of the tenant id in a Reactor {@code Context} / context-propagation registry. */
+    public static final String KEY = "multitenancy.tenant";
+
+    private static final ThreadLocal<String>  CURRENT    = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> IN_REQUEST = new ThreadLocal<>();   // set by TenantFilter
+
+    /* "no tenant" bound on top of a scoped value – ScopedValue cannot unbind */
+    @SuppressWarnings("StringOperationCanBeSimplified")
+    private static final String NONE = new String("");
+
+    private static final Scoped SCOPED = Scoped.lookup();     // null = thread-local only
 
     private TenantContext() {}
 
-    public static void set(String tenantId) { CURRENT.set(tenantId); }
+    public static void set(String tenantId) { bind(tenantId); }
 
-    public static String get() { return CURRENT.get(); }
+    public static String get() {
+        String id = CURRENT.get();
+        if (id == null && SCOPED != null) id = SCOPED.get();
+        return id == NONE ? null : id;
+    }
 
-    /** @throws IllegalStateException if no tenant id is present */
+    /** @throws TenantNotResolvedException if no tenant id is present */
     public static String getRequired() {
-        String id = CURRENT.get();
+        String id = get();
         if (id == null) {
-            throw new TenantNotResolvedException();
+            throw TenantNotResolvedException.of();
         }
         return id;
     }
 
-    public static void clear() { CURRENT.remove(); }
+    public static void clear() { bind(null); }
+
+    /** @return true if {@link #runWith}/{@link #callWith} bind through {@code ScopedValue} */
+    public static boolean isScoped() { return SCOPED != null; }
+
+    /* ─────────── request marker ─────────── */
+
+    /** Whether {@link TenantFilter} is serving a request on this thread. */
+    static boolean inRequest() { return IN_REQUEST.get() == Boolean.TRUE; }
+
+    /* FALSE instead of remove(): keeps the thread's map entry, so a request allocates nothing */
+    static void markRequest(boolean active) { IN_REQUEST.set(active); }
+
+    /* ─────────── scoped binding ─────────── */
+
+    /** Restores the tenant id that was bound before {@link #open}. */
+    @FunctionalInterface
+    public interface Scope extends AutoCloseable {
+        @Override void close();
+    }
+
+    /** Binds {@code tenantId} (or nothing, if {@code null}) to this thread until the returned scope is closed. */
+    public static Scope open(String tenantId) {
+        String previous = CURRENT.get();
+        bind(tenantId);
+        return () -> restore(previous);
+    }
+
+    public static void runWith(String tenantId, Runnable task) {
+        if (SCOPED == null) {
+            try (Scope ignored = open(tenantId)) {
+                task.run();
+            }
+            return;
+        }
+        String shadow = CURRENT.get();             // a thread binding would hide the scoped value
+        CURRENT.remove();
+        try {
+            SCOPED.run(tenantId == null ? NONE : tenantId, task);
+        } finally {
+            restore(shadow);
+        }
+    }
+
+    public static <T> T callWith(String tenantId, Callable<T> task) throws Exception {
+        if (SCOPED == null) {
+            try (Scope ignored = open(tenantId)) {
+                return task.call();
+            }
+        }
+        Object[]    result  = new Object[1];
+        Exception[] failure = new Exception[1];
+        runWith(tenantId, () -> {
+            try {
+                result[0] = task.call();
+            } catch (Exception ex) {
+                failure[0] = ex;
+            }
+        });
+        if (failure[0] != null) throw failure[0];
+        @SuppressWarnings("unchecked") T value = (T) result[0];
+        return value;
+    }
+
+    /* ─────────── propagation ─────────── */
+
+    /** Captures the current tenant id; the task runs under it on whichever thread executes it. */
+    public static Runnable wrap(Runnable task) {
+        String tenant = get();
+        return () -> runWith(tenant, task);
+    }
+
+    public static <T> Callable<T> wrap(Callable<T> task) {
+        String tenant = get();
+        return () -> callWith(tenant, task);
+    }
+
+    public static <T> Supplier<T> wrap(Supplier<T> task) {
+        String tenant = get();
+        return () -> {
+            try (Scope ignored = open(tenant)) {
+                return task.get();
+            }
+        };
+    }
+
+    /**
+     * Executor that hands the submitting thread's tenant id to every task,
+     * e.g. {@code CompletableFuture.supplyAsync(work, TenantContext.propagating(pool))}.
+     */
+    public static Executor propagating(Executor delegate) {
+        return task -> delegate.execute(wrap(task));
+    }
+
+    /**
+     * Registers the tenant id under {@link #KEY} with
+     * {@code io.micrometer.context.ContextRegistry}, so Reactor (with
+     * {@code Hooks.enableAutomaticContextPropagation()}) and other
+     * context-propagation users restore it from {@code contextWrite(Context.of(KEY, id))}
+     * on every operator and thread hop.
+     *
+     * @return {@code false} if context-propagation is not on the class-path
+     */
+    public static boolean registerContextPropagation() {
+        try {
+            Class<?> registry = Class.forName("io.micrometer.context.ContextRegistry");
+            Object instance = registry.getMethod("getInstance").invoke(null);
+            registry.getMethod("registerThreadLocalAccessor", String.class, Supplier.class, Consumer.class, Runnable.class)
+                    .invoke(instance, KEY,
+                            (Supplier<String>) TenantContext::get,
+                            (Consumer<String>) TenantContext::set,
+                            (Runnable) TenantContext::clear);
+            return true;
+        } catch (ClassNotFoundException ex) {
+            return false;
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException("Cannot register the tenant context accessor", ex);
+        }
+    }
+
+    /* ─────────── internal ─────────── */
+
+    /* null while a scoped value is bound would expose it – shadow with NONE instead */
+    private static void bind(String tenantId) {
+        if (tenantId != null) CURRENT.set(tenantId);
+        else if (SCOPED != null && SCOPED.isBound()) CURRENT.set(NONE);
+        else CURRENT.remove();
+    }
+
+    /** Puts back a raw thread binding taken from {@link #CURRENT} (possibly {@link #NONE}). */
+    private static void restore(String previous) {
+        if (previous == null) CURRENT.remove(); else CURRENT.set(previous);
+    }
+
+    /**
+     * {@code java.lang.ScopedValue} through method handles: it is final only
+     * from Java 25 and a preview API before, which this library does not
+     * compile against.
+     */
+    private record Scoped(Object key, MethodHandle whereMh, MethodHandle runMh,
+                          MethodHandle isBoundMh, MethodHandle getMh) {
+
+        static Scoped lookup() {
+            if (Runtime.version().feature() < 25 && !previewEnabled()) return null;
+            try {
+                Class<?> sv = Class.forName("java.lang.ScopedValue");
+                Class<?> carrier = Class.forName("java.lang.ScopedValue$Carrier");
+                MethodHandles.Lookup l = MethodHandles.publicLookup();
+                Object key = l.findStatic(sv, "newInstance", MethodType.methodType(sv)).invoke();
+                return new Scoped(key,
+                        l.findStatic(sv, "where", MethodType.methodType(carrier, sv, Object.class)),
+                        l.findVirtual(carrier, "run", MethodType.methodType(void.class, Runnable.class)),
+                        l.findVirtual(sv, "isBound", MethodType.methodType(boolean.class)),
+                        l.findVirtual(sv, "get", MethodType.methodType(Object.class)));
+            } catch (Throwable unavailable) {
+                return null;
+            }
+        }
+
+        private static boolean previewEnabled() {
+            try {
+                return ManagementFactory.getRuntimeMXBean().getInputArguments().contains("--enable-preview");
+            } catch (RuntimeException | LinkageError ex) {
+                return false;
+            }
+        }
+
+        boolean isBound() {
+            try {
+                return (boolean) isBoundMh.invoke(key);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        String get() {
+            try {
+                return (boolean) isBoundMh.invoke(key) ? (String) getMh.invoke(key) : null;
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        void run(String tenantId, Runnable task) {
+            try {
+                runMh.invoke(whereMh.invoke(key, (Object) tenantId), task);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        private static RuntimeException rethrow(Throwable t) {
+            if (t instanceof RuntimeException r) throw r;
+            if (t instanceof Error e) throw e;
+            return new IllegalStateException(t);
+        }
+    }
 }
@@ -2,26 +2,92 @@ package org.zakariafarih.multitenancycore;
 
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
-import lombok.RequiredArgsConstructor;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.sql.DataSource;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Idempotently creates (a) the tenant database and (b) every service schema.
- * Uses a one-shot Hikari pool (maxPool = 1) for DDL work.
+ * Bulk onboarding runs step (a) for a whole batch via {@link #createDatabases},
+ * over one connection to each tenant host rather than the admin DataSource.
+ *
+ * DDL pools (maxPool = {@code ddl-pool-size}) are kept per (host, port,
+ * database) and closed after {@code ddl-pool-idle-timeout} unused, so a
+ * database visited again – onboarding retries, bootstrap after a batch, a
+ * reload – does not pay for a new pool, handshake and housekeeping thread.
+ * Each DDL call is timed as {@code tenant.ddl.duration}, tagged with the
+ * host ({@code admin} for CREATE DATABASE).
+ *
+ * With a {@link TemplateDatabaseProvisioner}, new PostgreSQL databases are
+ * cloned from the migrated template instead of created empty, and step (b)
+ * hands the cloned objects to the tenant's {@code dbUser}; in-memory H2
+ * databases get the template replayed in step (b). Either way the tenant is
+ * then marked migrated.
  */
 @Slf4j
-@RequiredArgsConstructor
-public class TenantDatabaseCreator {
+public class TenantDatabaseCreator implements AutoCloseable {
 
     private final DataSource                 adminDataSource;   // points to postgres/postgresql
     private final String                     adminUsername;
     private final String                     adminPassword;
     private final MultitenancyPoolProperties poolProps;
+    private final MeterRegistry              meters;
+    private final Cache<String, DdlPool>     ddlPools;
+    private final TemplateDatabaseProvisioner templates;         // null = empty databases, migrated by Flyway
+    private final Set<String>                cloned = ConcurrentHashMap.newKeySet();   // tenant ids awaiting step (b)
+
+    public TenantDatabaseCreator(DataSource adminDataSource, String adminUsername, String adminPassword,
+                                 MultitenancyPoolProperties poolProps) {
+        this(adminDataSource, adminUsername, adminPassword, poolProps, new SimpleMeterRegistry());
+    }
+
+    public TenantDatabaseCreator(DataSource adminDataSource, String adminUsername, String adminPassword,
+                                 MultitenancyPoolProperties poolProps, MeterRegistry meters) {
+        this(adminDataSource, adminUsername, adminPassword, poolProps, meters, null);
+    }
+
+    public TenantDatabaseCreator(DataSource adminDataSource, String adminUsername, String adminPassword,
+                                 MultitenancyPoolProperties poolProps, MeterRegistry meters,
+                                 TemplateDatabaseProvisioner templates) {
+        this.adminDataSource = adminDataSource;
+        this.adminUsername   = adminUsername;
+        this.adminPassword   = adminPassword;
+        this.poolProps       = poolProps;
+        this.meters          = meters;
+        this.templates       = templates;
+        this.ddlPools = Caffeine.newBuilder()
+                .maximumSize(poolProps.getDdlPoolCacheSize())
+                .expireAfterAccess(poolProps.getDdlPoolIdleTimeout())
+                .scheduler(Scheduler.systemScheduler())           // close idle pools without further traffic
+                .removalListener((String key, DdlPool pool, RemovalCause cause) -> {
+                    if (pool != null) pool.retire();
+                })
+                .build();
+        Gauge.builder("tenant.ddl.pools", ddlPools, c -> c.estimatedSize())
+                .description("DDL connection pools currently open")
+                .register(meters);
+    }
 
     public void createDatabaseAndSchemaIfNotExists(
             TenantProperties.TenantConfig cfg,
@@ -33,19 +99,9 @@ public class TenantDatabaseCreator {
         try (Connection c = adminDataSource.getConnection();
              Statement  s = c.createStatement()) {
 
-            boolean postgres = c.getMetaData().getDatabaseProductName()
-                    .toLowerCase().contains("postgres");
-            if (postgres) {
+            if (isPostgres(c)) {
                 log.info("Ensuring database {} exists (PostgreSQL)", dbName);
-                try {
-                    s.executeUpdate("CREATE DATABASE " + dbName);
-                    log.info("Database {} created", dbName);
-                } catch (SQLException ex) {
-                    // 42P04 = already exists | 42501 = insufficient privilege
-                    if (!"42P04".equals(ex.getSQLState()) &&
-                            !"42501".equals(ex.getSQLState())) throw ex;
-                    log.debug("CREATE DATABASE skipped: {}", ex.getMessage());
-                }
+                timed("admin", () -> createDatabase(s, cfg, dbName, schemas));
             } else {
                 log.info("Non-Postgres database → skipping CREATE DATABASE");
             }
@@ -53,41 +109,257 @@ public class TenantDatabaseCreator {
             throw new RuntimeException("Failed while ensuring database " + dbName, e);
         }
 
-        /* 2️⃣ ensure service schemas exist (tiny throw-away pool) */
-        boolean inMemory = cfg.getHost() == null || cfg.getHost().isBlank();
+        /* 2️⃣ ensure service schemas exist */
+        ensureSchemas(cfg, schemas);
+    }
 
-        String url = inMemory
-                ? "jdbc:h2:mem:" + dbName + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1"
-                : "jdbc:postgresql://%s:%d/%s".formatted(cfg.getHost(), cfg.getPort(), dbName);
+    /**
+     * Step 1 for a whole batch of tenants on one host, over a single admin
+     * connection to that host's {@code maintenance-database} (a cached DDL
+     * pool with the admin credentials): one {@code pg_database} lookup finds
+     * the missing databases, which are then created one statement at a time
+     * (CREATE DATABASE cannot share a transaction or batch). In-memory H2
+     * databases need no step 1.
+     *
+     * @return failure per tenant id; tenants without an entry are ready for {@link #ensureSchemas}
+     * @throws IllegalArgumentException if the tenants live on more than one host
+     */
+    public Map<String, Exception> createDatabases(Collection<TenantProperties.TenantConfig> tenants,
+                                                  String[] schemas) {
+        Map<String, Exception> failures = new HashMap<>();
+        Set<String> hosts = new HashSet<>();
+        tenants.forEach(cfg -> hosts.add(cfg.hostKey()));
+        if (hosts.size() > 1) {
+            throw new IllegalArgumentException("Databases are created per host – got tenants on " + hosts);
+        }
+        TenantProperties.TenantConfig any = tenants.stream().findFirst().orElse(null);
+        if (any == null || any.getHost() == null || any.getHost().isBlank()) return failures;
 
-        HikariConfig hc = new HikariConfig();
-        hc.setJdbcUrl(url);
-        hc.setUsername(inMemory ? "sa" : adminUsername);
-        hc.setPassword(inMemory ? ""   : adminPassword);
-        hc.setPoolName("ddl-" + dbName);
-        hc.setMaximumPoolSize(poolProps.getDdlPoolSize());
-        hc.setMinimumIdle(0);
-        hc.setIdleTimeout(poolProps.getDefaultIdleTimeout().toMillis());
-        hc.setValidationTimeout(poolProps.getValidationTimeout().toMillis());
+        DdlPool pool = lease(any, poolProps.getMaintenanceDatabase(), false);
+        try (Connection c = pool.ds.getConnection()) {
+            if (!isPostgres(c)) return failures;
 
-        try (HikariDataSource ddlDs = new HikariDataSource(hc);
-             Connection conn       = ddlDs.getConnection();
-             Statement  stmt       = conn.createStatement()) {
+            Set<String> existing = new HashSet<>();
+            try (PreparedStatement q = c.prepareStatement("SELECT datname FROM pg_database WHERE datname = ANY (?)")) {
+                q.setArray(1, c.createArrayOf("text", tenants.stream()
+                        .map(cfg -> cfg.databaseName().toLowerCase()).toArray()));
+                try (ResultSet rs = q.executeQuery()) {
+                    while (rs.next()) existing.add(rs.getString(1));
+                }
+            }
+
+            try (Statement s = c.createStatement()) {
+                for (var cfg : tenants) {
+                    String dbName = cfg.databaseName();
+                    if (existing.contains(dbName.toLowerCase())) continue;
+                    try {
+                        timed("admin", () -> createDatabase(s, cfg, dbName, schemas));
+                    } catch (SQLException ex) {
+                        failures.put(cfg.getId(), ex);
+                    }
+                }
+            }
+            log.info("Ensured {} databases on {} ({} already existed, {} failed)",
+                    tenants.size(), any.hostKey(), existing.size(), failures.size());
+        } catch (SQLException e) {
+            RuntimeException ex = new RuntimeException("Failed while ensuring databases on " + any.hostKey(), e);
+            tenants.forEach(cfg -> failures.putIfAbsent(cfg.getId(), ex));
+        } finally {
+            pool.release();
+        }
+        return failures;
+    }
+
+    /** Step 2: every service schema inside the tenant database (cached DDL pool). */
+    public void ensureSchemas(TenantProperties.TenantConfig cfg, String[] schemas) {
+        String dbName = cfg.getDbName();
+        boolean inMemory = cfg.getHost() == null || cfg.getHost().isBlank();
+
+        DdlPool pool = lease(cfg, dbName, inMemory);
+        try (Connection conn = pool.ds.getConnection();
+             Statement  stmt = conn.createStatement()) {
 
             for (String schema : schemas) {
                 /* H2 cannot handle “… AUTHORIZATION user” unless that role exists */
                 String ddl;
                 if (inMemory || cfg.getDbUser() == null || cfg.getDbUser().isBlank()) {
                     ddl = "CREATE SCHEMA IF NOT EXISTS %s";
-                    stmt.executeUpdate(ddl.formatted(schema));
+                    timed(cfg.hostKey(), () -> stmt.executeUpdate(ddl.formatted(schema)));
                 } else {
                     ddl = "CREATE SCHEMA IF NOT EXISTS %s AUTHORIZATION %s";
-                    stmt.executeUpdate(ddl.formatted(schema, cfg.getDbUser()));
+                    timed(cfg.hostKey(), () -> stmt.executeUpdate(ddl.formatted(schema, cfg.getDbUser())));
                 }
                 log.info("Ensured schema {} exists in {}", schema, dbName);
             }
+            if (inMemory && templates != null && templates.cloneInMemory(stmt, schemas)) {
+                log.info("Database {} cloned from the H2 template", dbName);
+                cloned.add(cfg.getId());
+            }
+            boolean handOver = !inMemory && templates != null && cfg.getDbUser() != null && !cfg.getDbUser().isBlank();
+            boolean fresh = cloned.contains(cfg.getId());
+            if (handOver) {
+                for (String schema : schemas) {
+                    /* also after a failed or lost hand-over: the clone is still the admin's */
+                    if (fresh || ownedByOther(conn, schema, cfg.getDbUser())) {
+                        timed(cfg.hostKey(), () -> stmt.execute(HAND_OVER.formatted(schema, cfg.getDbUser())));
+                    }
+                }
+            }
+            if (fresh) {
+                templates.markCurrent(cfg, schemas);
+                cloned.remove(cfg.getId());     // only now – a retry must hand over and mark again
+            }
         } catch (SQLException e) {
             throw new RuntimeException("Failed to ensure schemas in " + dbName, e);
+        } finally {
+            pool.release();
+        }
+    }
+
+    /** Closes every cached DDL pool. */
+    @Override
+    public void close() {
+        ddlPools.invalidateAll();
+        ddlPools.cleanUp();
+    }
+
+    /* ——— helpers ——— */
+
+    /**
+     * A cached DDL pool plus the callers currently using it: a pool evicted
+     * from the cache is closed by whoever is last – the cache or its final user.
+     */
+    private static final class DdlPool {
+        final HikariDataSource ds;
+        final AtomicInteger    leases = new AtomicInteger();
+        volatile boolean       retired;
+
+        DdlPool(HikariDataSource ds) { this.ds = ds; }
+
+        void retire() {
+            retired = true;
+            if (leases.get() == 0) ds.close();
+        }
+
+        void release() {
+            if (leases.decrementAndGet() == 0 && retired) ds.close();
+        }
+    }
+
+    private DdlPool lease(TenantProperties.TenantConfig cfg, String dbName, boolean inMemory) {
+        while (true) {
+            DdlPool pool = ddlPool(cfg, dbName, inMemory);
+            pool.leases.incrementAndGet();
+            if (!pool.retired) return pool;
+            pool.release();                     // evicted meanwhile – the cache builds a new one
+        }
+    }
+
+    private DdlPool ddlPool(TenantProperties.TenantConfig cfg, String dbName, boolean inMemory) {
+        String url = inMemory
+                ? "jdbc:h2:mem:" + dbName + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1"
+                : "jdbc:postgresql://%s:%d/%s".formatted(cfg.getHost(), cfg.getPort(), dbName);
+
+        return ddlPools.get(url, key -> {
+            HikariConfig hc = new HikariConfig();
+            hc.setJdbcUrl(url);
+            hc.setUsername(inMemory ? "sa" : adminUsername);
+            hc.setPassword(inMemory ? ""   : adminPassword);
+            hc.setPoolName("ddl-" + dbName);
+            hc.setMaximumPoolSize(poolProps.getDdlPoolSize());
+            hc.setMinimumIdle(0);
+            hc.setIdleTimeout(poolProps.getDdlPoolIdleTimeout().toMillis());
+            hc.setValidationTimeout(poolProps.getValidationTimeout().toMillis());
+            return new DdlPool(new HikariDataSource(hc));
+        });
+    }
+
+    private interface Ddl { void run() throws SQLException; }
+
+    /** Runs one DDL round-trip and records it under {@code tenant.ddl.duration{host}}. */
+    private void timed(String host, Ddl ddl) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            ddl.run();
+        } finally {
+            Timer.builder("tenant.ddl.duration")
+                    .description("Round-trip time of tenant DDL statements")
+                    .tag("host", host)
+                    .register(meters)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /** Whether {@code schema} or a relation in it belongs to a role other than {@code user}. */
+    private static boolean ownedByOther(Connection c, String schema, String user) throws SQLException {
+        try (PreparedStatement q = c.prepareStatement("""
+                SELECT 1 FROM pg_namespace n
+                 WHERE n.nspname = ? AND (pg_get_userbyid(n.nspowner) <> ?
+                    OR EXISTS (SELECT 1 FROM pg_class c WHERE c.relnamespace = n.oid
+                                AND c.relkind IN ('r', 'p', 'v', 'm', 'f')
+                                AND pg_get_userbyid(c.relowner) <> ?))""")) {
+            q.setString(1, schema);
+            q.setString(2, user);
+            q.setString(3, user);
+            try (ResultSet rs = q.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static boolean isPostgres(Connection c) throws SQLException {
+        return c.getMetaData().getDatabaseProductName().toLowerCase().contains("postgres");
+    }
+
+    /** Clones from the template when one is configured, remembering the tenant for step (b). */
+    private void createDatabase(Statement s, TenantProperties.TenantConfig cfg, String dbName, String[] schemas)
+            throws SQLException {
+        if (templates == null) {
+            createDatabase(s, dbName);
+        } else if (templates.createDatabase(s, cfg, dbName, schemas)) {
+            cloned.add(cfg.getId());
+        }
+    }
+
+    /**
+     * Cloned objects belong to the admin user who built the template: give
+     * the schema and everything in it to the tenant user. Sequences owned by
+     * a column follow their table.
+     */
+    private static final String HAND_OVER = """
+            DO $$
+            DECLARE r record;
+            BEGIN
+              EXECUTE format('ALTER SCHEMA %%I OWNER TO %%I', '%1$s', '%2$s');
+              FOR r IN SELECT c.relname,
+                              CASE c.relkind WHEN 'v' THEN 'VIEW' WHEN 'm' THEN 'MATERIALIZED VIEW'
+                                             WHEN 'S' THEN 'SEQUENCE' WHEN 'f' THEN 'FOREIGN TABLE'
+                                             ELSE 'TABLE' END AS kind
+                         FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace
+                        WHERE n.nspname = '%1$s' AND c.relkind IN ('r', 'p', 'v', 'm', 'S', 'f')
+                          AND NOT EXISTS (SELECT 1 FROM pg_depend d
+                                           WHERE d.classid = 'pg_class'::regclass AND d.objid = c.oid
+                                             AND d.deptype IN ('a', 'i'))
+              LOOP
+                EXECUTE format('ALTER %%s %%I.%%I OWNER TO %%I', r.kind, '%1$s', r.relname, '%2$s');
+              END LOOP;
+              FOR r IN SELECT p.oid::regprocedure AS sig
+                         FROM pg_proc p JOIN pg_namespace n ON n.oid = p.pronamespace
+                        WHERE n.nspname = '%1$s'
+              LOOP
+                EXECUTE format('ALTER ROUTINE %%s OWNER TO %%I', r.sig, '%2$s');
+              END LOOP;
+            END $$""";
+
+    private static void createDatabase(Statement s, String dbName) throws SQLException {
+        try {
+            s.executeUpdate("CREATE DATABASE " + dbName);
+            log.info("Database {} created", dbName);
+        } catch (SQLException ex) {
+            // 42P04 = already exists | 42501 = insufficient privilege
+            if (!"42P04".equals(ex.getSQLState()) &&
+                    !"42501".equals(ex.getSQLState())) throw ex;
+            log.debug("CREATE DATABASE skipped: {}", ex.getMessage());
         }
     }
 }
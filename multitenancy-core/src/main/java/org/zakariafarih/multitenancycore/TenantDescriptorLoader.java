@@ -0,0 +1,328 @@
+package org.zakariafarih.multitenancycore;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.events.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Finds every tenants*.yml on the class-path and parses the tenant
+ * descriptors they contain, for whichever {@link TenantRegistry} is in use.
+ *
+ * Files are parsed concurrently, each as a stream of YAML events straight
+ * into {@link TenantProperties.TenantConfig}s, so no document tree is built.
+ * A tenant section using aliases or {@code <<} merge keys is loaded as a
+ * document instead, which resolves them.
+ * With {@code multitenancy.registry.snapshot-file} set, the result is also
+ * written to a binary snapshot that later starts read instead, for as long
+ * as every descriptor file keeps its URL, size and modification time.
+ */
+@Slf4j
+public class TenantDescriptorLoader {
+
+    private static final int SNAPSHOT_MAGIC   = 0x54454e54;   // "TENT"
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private final MultitenancyRegistryProperties props;
+
+    public TenantDescriptorLoader() {
+        this(new MultitenancyRegistryProperties());
+    }
+
+    public TenantDescriptorLoader(MultitenancyRegistryProperties props) {
+        this.props = props;
+    }
+
+    public List<TenantProperties.TenantConfig> load() {
+        try {
+            List<Resource> files = resources();
+            String fingerprint = fingerprint(files);
+            Path snapshot = props.getSnapshotFile();
+
+            if (snapshot != null && fingerprint != null) {
+                List<TenantProperties.TenantConfig> cached = readSnapshot(snapshot, fingerprint);
+                if (cached != null) {
+                    log.info("Loaded {} tenant descriptors from snapshot {}", cached.size(), snapshot);
+                    return cached;
+                }
+            }
+
+            List<TenantProperties.TenantConfig> tenants = files.parallelStream()
+                    .map(TenantDescriptorLoader::parse)
+                    .flatMap(List::stream)
+                    .toList();
+            log.info("Loaded {} tenant descriptors from {} file(s)", tenants.size(), files.size());
+
+            if (snapshot != null && fingerprint != null) writeSnapshot(snapshot, fingerprint, tenants);
+            return tenants;
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to load tenant descriptors", e);
+        }
+    }
+
+    /** Descriptor files on the file system – the ones that can change while the application runs. */
+    public List<Path> files() {
+        try {
+            List<Path> out = new ArrayList<>();
+            for (Resource r : resources()) {
+                if (r.isFile()) out.add(r.getFile().toPath());
+            }
+            return out;
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to resolve tenant descriptors", e);
+        }
+    }
+
+    /* ──────────────── YAML ──────────────── */
+
+    /** {@code tenants:} sequence of flat mappings; other top-level keys are skipped. */
+    public static List<TenantProperties.TenantConfig> parse(Resource res) {
+        List<TenantProperties.TenantConfig> out = new ArrayList<>();
+        try (Reader in = new InputStreamReader(res.getInputStream(), StandardCharsets.UTF_8)) {
+            Iterator<Event> events = new Yaml(options()).parse(in).iterator();
+            while (events.hasNext()) {
+                if (!(events.next() instanceof MappingStartEvent)) continue;   // stream/document markers
+                for (Event key; !((key = events.next()) instanceof MappingEndEvent); ) {
+                    if (key instanceof ScalarEvent s && "tenants".equals(s.getValue())) {
+                        tenants(events, out);
+                    } else {
+                        skip(key, events);
+                        skip(events.next(), events);
+                    }
+                }
+            }
+        } catch (NeedsDocument e) {
+            out = document(res);
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalStateException("Cannot parse " + res.getDescription(), e);
+        }
+        log.debug("Parsed {} tenant descriptors from {}", out.size(), res.getFilename());
+        return out;
+    }
+
+    private static void tenants(Iterator<Event> events, List<TenantProperties.TenantConfig> out) {
+        Event value = events.next();
+        if (value instanceof AliasEvent) throw new NeedsDocument();
+        if (!(value instanceof SequenceStartEvent)) {     // "tenants:" left empty
+            skip(value, events);
+            return;
+        }
+        for (Event item; !((item = events.next()) instanceof SequenceEndEvent); ) {
+            if (item instanceof AliasEvent) throw new NeedsDocument();
+            if (!(item instanceof MappingStartEvent)) {
+                throw new IllegalStateException("Tenant entry is not a mapping at " + item.getStartMark());
+            }
+            var cfg = new TenantProperties.TenantConfig();
+            for (Event key; !((key = events.next()) instanceof MappingEndEvent); ) {
+                Event val = events.next();
+                if (val instanceof AliasEvent || key instanceof ScalarEvent k0 && "<<".equals(k0.getValue())) {
+                    throw new NeedsDocument();
+                }
+                if (!(key instanceof ScalarEvent k) || !(val instanceof ScalarEvent v)) {
+                    throw new IllegalStateException("Tenant properties must be scalars at " + key.getStartMark());
+                }
+                set(cfg, k.getValue(), isNull(v) ? null : v.getValue());
+            }
+            out.add(cfg);
+        }
+    }
+
+    /** Loads the whole file as a document, which resolves aliases and {@code <<} merge keys. */
+    private static List<TenantProperties.TenantConfig> document(Resource res) {
+        try (Reader in = new InputStreamReader(res.getInputStream(), StandardCharsets.UTF_8)) {
+            TenantProperties props = new Yaml(options()).loadAs(in, TenantProperties.class);
+            return props == null || props.getTenants() == null ? new ArrayList<>() : props.getTenants();
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalStateException("Cannot parse " + res.getDescription(), e);
+        }
+    }
+
+    /** Thrown by the event parser when the tenant section refers to other nodes. */
+    private static final class NeedsDocument extends RuntimeException {
+        NeedsDocument() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static void set(TenantProperties.TenantConfig cfg, String key, String value) {
+        if (value == null) return;                         // keep the field default
+        switch (key) {
+            case "id"            -> cfg.setId(value);
+            case "dbName"        -> cfg.setDbName(value);
+            case "dbUser"        -> cfg.setDbUser(value);
+            case "dbPassword"    -> cfg.setDbPassword(value);
+            case "host"          -> cfg.setHost(value);
+            case "port"          -> cfg.setPort(Integer.parseInt(value));
+            case "maxPool"       -> cfg.setMaxPool(Integer.parseInt(value));
+            case "idleTimeoutMs" -> cfg.setIdleTimeoutMs(Long.parseLong(value));
+            case "priority"      -> cfg.setPriority(Integer.parseInt(value));
+            case "schema"        -> cfg.setSchema(value);
+            default -> throw new IllegalStateException("Unknown tenant property '" + key + "'");
+        }
+    }
+
+    /** Events are consumed as they are scanned, so the default 3 MB document cap is not needed. */
+    private static LoaderOptions options() {
+        var options = new LoaderOptions();
+        options.setCodePointLimit(Integer.MAX_VALUE);
+        return options;
+    }
+
+    private static boolean isNull(ScalarEvent v) {
+        return v.isPlain() && (v.getValue().isEmpty() || "~".equals(v.getValue()) || "null".equals(v.getValue()));
+    }
+
+    /** Consumes the rest of a node whose first event is {@code first}. */
+    private static void skip(Event first, Iterator<Event> events) {
+        if (!(first instanceof CollectionStartEvent)) return;
+        for (int depth = 1; depth > 0; ) {
+            Event e = events.next();
+            if (e instanceof CollectionStartEvent) depth++;
+            else if (e instanceof CollectionEndEvent) depth--;
+        }
+    }
+
+    /* ──────────────── snapshot ──────────────── */
+
+    /** Identity of the descriptor set, or {@code null} when a file cannot be stat'ed (no caching). */
+    private static String fingerprint(List<Resource> files) {
+        StringBuilder sb = new StringBuilder();
+        for (Resource r : files) {
+            try {
+                sb.append(r.getURL()).append('|').append(r.contentLength())
+                  .append('|').append(r.lastModified()).append('\n');
+            } catch (IOException e) {
+                return null;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static List<TenantProperties.TenantConfig> readSnapshot(Path file, String fingerprint) {
+        if (!Files.isRegularFile(file)) return null;
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) return null;
+            if (!fingerprint.equals(readString(in))) {
+                log.info("Tenant descriptors changed since snapshot {}; re-parsing", file);
+                return null;
+            }
+            int count = in.readInt();
+            List<TenantProperties.TenantConfig> out = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                var cfg = new TenantProperties.TenantConfig();
+                cfg.setId(readString(in));
+                cfg.setDbName(readString(in));
+                cfg.setDbUser(readString(in));
+                cfg.setDbPassword(readString(in));
+                cfg.setHost(readString(in));
+                cfg.setSchema(readString(in));
+                cfg.setPort(in.readInt());
+                cfg.setMaxPool(in.readInt());
+                cfg.setPriority(in.readInt());
+                cfg.setIdleTimeoutMs(in.readLong());
+                out.add(cfg);
+            }
+            return out;
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable tenant snapshot {}: {}", file, e.toString());
+            return null;
+        }
+    }
+
+    /** Written next to the target and moved into place, so readers never see a partial file. */
+    private static void writeSnapshot(Path file, String fingerprint, List<TenantProperties.TenantConfig> tenants) {
+        try {
+            Path dir = file.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+            try {
+                restrictToOwner(tmp);                            // holds database passwords
+                try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                    out.writeInt(SNAPSHOT_MAGIC);
+                    out.writeInt(SNAPSHOT_VERSION);
+                    writeString(out, fingerprint);
+                    out.writeInt(tenants.size());
+                    for (var cfg : tenants) {
+                        writeString(out, cfg.getId());
+                        writeString(out, cfg.getDbName());
+                        writeString(out, cfg.getDbUser());
+                        writeString(out, cfg.getDbPassword());
+                        writeString(out, cfg.getHost());
+                        writeString(out, cfg.getSchema());
+                        out.writeInt(cfg.getPort());
+                        out.writeInt(cfg.getMaxPool());
+                        out.writeInt(cfg.getPriority());
+                        out.writeLong(cfg.getIdleTimeoutMs());
+                    }
+                }
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            log.warn("Could not write tenant snapshot {}: {}", file, e.toString());
+        }
+    }
+
+    private static void restrictToOwner(Path p) throws IOException {
+        try {
+            Files.setPosixFilePermissions(p, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException ignored) {
+            // non-POSIX file system – rely on the directory's permissions
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int len = in.readInt();
+        if (len < 0) return null;
+        return new String(in.readNBytes(len), StandardCharsets.UTF_8);
+    }
+
+    /* ——— internal ——— */
+
+    private List<Resource> resources() throws IOException {
+        var resolver = new PathMatchingResourcePatternResolver();
+        if (props.getDescriptors() != null) return List.of(resolver.getResources(props.getDescriptors()));
+
+        // first look for any tenants-*.yml (e.g. tenants-big.yml)
+        Resource[] dashResources = resolver.getResources("classpath*:**/tenants-*.yml");
+        Resource[] toLoad = dashResources.length > 0
+                // if we found any, use only those
+                ? dashResources
+                // otherwise fall back to the classic tenants.yml
+                : resolver.getResources("classpath*:**/tenants.yml");
+
+        // prefer external files (so test’s tenants-big.yml on disk wins over jars)
+        var external = Arrays.stream(toLoad)
+                .filter(r -> {
+                    try {
+                        return "file".equals(r.getURL().getProtocol());
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                })
+                .toList();
+        return external.isEmpty() ? List.of(toLoad) : external;
+    }
+}
@@ -2,31 +2,54 @@ package org.zakariafarih.multitenancycore;
 
 import jakarta.servlet.*;
 import jakarta.servlet.http.HttpServletRequest;
-import lombok.RequiredArgsConstructor;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.MDC;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
-import org.springframework.util.AntPathMatcher;
+import org.springframework.util.function.SingletonSupplier;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.function.Supplier;
 
 /**
  * Stores the tenant id in TenantContext (ThreadLocal) and MDC.
  * Resolution logic is delegated to {@link TenantIdResolver}.
+ * Ids unknown to the {@link TenantRegistry} are answered with 404 right here,
+ * so junk ids never reach the pool cache; ids hammered past the
+ * {@link UnknownTenantGuard} limit get 429. While a deferred bootstrap is
+ * running, requests for a tenant that is not ready yet get a fast 503 with
+ * Retry-After.
  */
 @Slf4j
 @Component @Order(Ordered.HIGHEST_PRECEDENCE)
-@RequiredArgsConstructor
 public class TenantFilter implements Filter {
 
-    private static final List<String> SKIP = List.of(
-            "/actuator/**", "/static/**", "/public/**");
+    private static final PathPrefixTrie SKIP = new PathPrefixTrie(List.of(
+            "/actuator/**", "/static/**", "/public/**", "/tenants/reload", "/tenants/batch"));
 
-    private final AntPathMatcher matcher = new AntPathMatcher();
     private final TenantIdResolver tenantIdResolver;
+    private final TenantRegistry   registry;
+    private final MultitenancyResolutionProperties resolution;
+    private final UnknownTenantGuard unknownTenants;
+    private final Supplier<TenantBootstrapper> bootstrapper;
+
+    public TenantFilter(TenantIdResolver tenantIdResolver,
+                        TenantRegistry registry,
+                        MultitenancyResolutionProperties resolution,
+                        UnknownTenantGuard unknownTenants,
+                        ObjectProvider<TenantBootstrapper> bootstrapper) {
+        this.tenantIdResolver = tenantIdResolver;
+        this.registry         = registry;
+        this.resolution       = resolution;
+        this.unknownTenants   = unknownTenants;
+        this.bootstrapper     = SingletonSupplier.ofNullable(bootstrapper::getIfAvailable);
+    }
 
     @Override
     public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain)
@@ -35,20 +58,38 @@ public class TenantFilter implements Filter {
         HttpServletRequest http = (HttpServletRequest) req;
         String uri = http.getRequestURI();
 
+        TenantContext.markRequest(true);
         try {
-            if (SKIP.stream().anyMatch(p -> matcher.match(p, uri))) {
+            if (SKIP.matches(uri)) {
                 chain.doFilter(req, res);
                 return;
             }
 
             String tenant = tenantIdResolver.resolveTenantId(http);
             if (tenant != null && !tenant.isBlank()) {
+                if (resolution.isRejectUnknown() && !registry.contains(tenant)) {
+                    HttpServletResponse rsp = (HttpServletResponse) res;
+                    HttpStatus status = unknownTenants.reject(tenant);
+                    if (status == HttpStatus.TOO_MANY_REQUESTS) {
+                        rsp.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(unknownTenants.retryAfterSeconds()));
+                    }
+                    rsp.sendError(status.value(), "Unknown tenant");
+                    return;
+                }
+                TenantBootstrapper gate = bootstrapper.get();
+                if (gate != null && !gate.awaitReady(tenant)) {
+                    HttpServletResponse rsp = (HttpServletResponse) res;
+                    rsp.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(gate.retryAfterSeconds()));
+                    rsp.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "Tenant is still being provisioned");
+                    return;
+                }
                 TenantContext.set(tenant);
                 MDC.put("tenant", tenant);
             }
 
             chain.doFilter(req, res);
         } finally {
+            TenantContext.markRequest(false);
             TenantContext.clear();
             MDC.remove("tenant");
         }
@@ -0,0 +1,81 @@
+package org.zakariafarih.multitenancycore;
+
+import java.util.Collection;
+
+/**
+ * Immutable open-addressing set of tenant ids that can be probed with any
+ * character range – e.g. a segment of the request URI – without creating a
+ * substring. A hit returns the canonical {@link String} instance held by the
+ * {@link TenantRegistry}. Rebuilt (copy-on-write) whenever the registry changes.
+ * {@link #row} maps an id back to its position in the source collection,
+ * which is how {@link CompactTenantRegistry} addresses its columns.
+ */
+final class TenantIdIndex {
+
+    static final TenantIdIndex EMPTY = new TenantIdIndex(java.util.List.of());
+
+    private final String[] table;
+    private final int[]    rows;       // position of table[i] in the source collection
+    private final int      mask;
+    private final int      size;
+
+    TenantIdIndex(Collection<String> ids) {
+        int capacity = Integer.highestOneBit(Math.max(4, ids.size() * 2) - 1) << 1;
+        this.table = new String[capacity];
+        this.rows  = new int[capacity];
+        this.mask  = capacity - 1;
+        this.size  = ids.size();
+        int row = 0;
+        for (String id : ids) {
+            int i = spread(id.hashCode()) & mask;
+            while (table[i] != null) i = (i + 1) & mask;
+            table[i] = id;
+            rows[i]  = row++;
+        }
+    }
+
+    int size() { return size; }
+
+    /** @return the position of {@code id} in the source collection, or -1 if unknown */
+    int row(String id) {
+        int i = spread(id.hashCode()) & mask;
+        for (String candidate; (candidate = table[i]) != null; i = (i + 1) & mask) {
+            if (candidate.equals(id)) return rows[i];
+        }
+        return -1;
+    }
+
+    /** @return the canonical id, or {@code null} if unknown */
+    String find(String id) {
+        int i = spread(id.hashCode()) & mask;
+        for (String candidate; (candidate = table[i]) != null; i = (i + 1) & mask) {
+            if (candidate.equals(id)) return candidate;
+        }
+        return null;
+    }
+
+    /** Same as {@link #find(String)} for {@code chars[from, to)}. */
+    String find(CharSequence chars, int from, int to) {
+        int h = 0;
+        for (int k = from; k < to; k++) h = 31 * h + chars.charAt(k);   // == String.hashCode()
+
+        int len = to - from;
+        int i = spread(h) & mask;
+        for (String candidate; (candidate = table[i]) != null; i = (i + 1) & mask) {
+            if (candidate.length() == len && regionEquals(candidate, chars, from)) return candidate;
+        }
+        return null;
+    }
+
+    /* ——— internal ——— */
+
+    private static int spread(int h) { return h ^ (h >>> 16); }
+
+    private static boolean regionEquals(String candidate, CharSequence chars, int from) {
+        if (chars instanceof String s) return s.regionMatches(from, candidate, 0, candidate.length());
+        for (int k = 0; k < candidate.length(); k++) {
+            if (candidate.charAt(k) != chars.charAt(from + k)) return false;
+        }
+        return true;
+    }
+}
@@ -1,8 +1,26 @@
 package org.zakariafarih.multitenancycore;
 
-/** Thrown when no tenant id is bound to the current request context. */
+/**
+ * Thrown when no tenant id is bound to the current request context (mapped to 400).
+ * {@link #of} leaves out the stack trace on a {@link TenantFilter} request thread,
+ * where the client simply sent no tenant id.
+ */
 public class TenantNotResolvedException extends RuntimeException {
     public TenantNotResolvedException() {
-        super("Tenant id is required but was not resolved from the request");
+        this(true);
+    }
+
+    protected TenantNotResolvedException(boolean stackTrace) {
+        super("Tenant id is required but was not resolved from the request", null, true, stackTrace);
+    }
+
+    /** Without a stack trace. */
+    public static TenantNotResolvedException stackless() {
+        return new TenantNotResolvedException(false);
+    }
+
+    /** Stackless on a request thread of {@link TenantFilter}, with a stack trace anywhere else. */
+    public static TenantNotResolvedException of() {
+        return new TenantNotResolvedException(!TenantContext.inRequest());
     }
 }
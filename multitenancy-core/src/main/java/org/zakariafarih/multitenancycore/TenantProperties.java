@@ -21,5 +21,56 @@ public class TenantProperties {
         private int    port = 5432;
         private int maxPool;    // Optional per-tenant override
         private long idleTimeoutMs;     // optional
+        private int priority;           // optional, higher bootstraps first (e.g. premium tier)
+        private String schema;          // optional, tenant schema in SHARED_HOST mode (default: id)
+
+        /** Database server this tenant lives on ("h2" for in-memory tenants). */
+        public String hostKey() {
+            return hostKey(host, port);
+        }
+
+        /** {@link #hostKey()} of a tenant on {@code host:port}. */
+        public static String hostKey(String host, int port) {
+            return (host == null || host.isBlank()) ? "h2" : host + ':' + port;
+        }
+
+        /** Database of this tenant's own pool: {@code dbName}, else the id. */
+        public String databaseName() {
+            return (dbName == null || dbName.isBlank()) ? id : dbName;
+        }
+
+        /** JDBC URL of a tenant pool on database {@code db} (in-memory H2 without a host). */
+        public String jdbcUrl(String db) {
+            return (host == null || host.isBlank())
+                    ? "jdbc:h2:mem:%s;MODE=PostgreSQL;DB_CLOSE_DELAY=-1".formatted(db)
+                    : "jdbc:postgresql://%s:%d/%s".formatted(host, port, db);
+        }
+
+        /** User tenant pools connect as. */
+        public String poolUser() {
+            if (host == null || host.isBlank()) return "sa";
+            return dbUser != null ? dbUser : "postgres";
+        }
+
+        /** Field-by-field copy, so a registry never holds (or adjusts) a caller's object. */
+        public TenantConfig copy() {
+            var c = new TenantConfig();
+            c.setId(id);
+            c.setDbName(dbName);
+            c.setDbUser(dbUser);
+            c.setDbPassword(dbPassword);
+            c.setHost(host);
+            c.setPort(port);
+            c.setMaxPool(maxPool);
+            c.setIdleTimeoutMs(idleTimeoutMs);
+            c.setPriority(priority);
+            c.setSchema(schema);
+            return c;
+        }
+
+        /** Schema holding this tenant's tables when pools are shared per host. */
+        public String schemaName() {
+            return (schema == null || schema.isBlank()) ? id : schema;
+        }
     }
 }
\ No newline at end of file
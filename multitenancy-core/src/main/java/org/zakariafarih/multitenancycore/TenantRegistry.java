@@ -1,70 +1,69 @@
 package org.zakariafarih.multitenancycore;
 
-import lombok.Getter;
-import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
-import org.yaml.snakeyaml.Yaml;
-
-import java.io.IOException;
-import java.io.InputStream;
-import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Loads every tenants*.yml found on the class-path and provides
- * fast lookup by tenant id.
+ * Registered tenants, looked up by id on every routed request.
+ *
+ * {@link MapTenantRegistry} keeps the descriptors as loaded;
+ * {@link CompactTenantRegistry} stores them column-wise for very large
+ * tenant counts. Pick one with {@code multitenancy.registry.type}.
+ * (This used to be the map-backed class itself – code that did
+ * {@code new TenantRegistry()} now uses {@code new MapTenantRegistry()}.)
  */
-@Slf4j
-public class TenantRegistry {
+public interface TenantRegistry {
+
+    /** Read-only view of all tenants. */
+    Map<String, TenantProperties.TenantConfig> getTenantMap();
+
+    /** Membership check – no locking, no allocation. */
+    boolean contains(String tenantId);
+
+    /** @throws UnknownTenantException if {@code tenantId} is not registered */
+    TenantProperties.TenantConfig get(String tenantId);
+
+    /*
+     * Single fields, like get(..) failing with UnknownTenantException –
+     * implementations may answer them without building a descriptor.
+     */
+
+    /** Per-tenant {@code maxPool} override, 0 if unset. */
+    default int maxPool(String tenantId) { return get(tenantId).getMaxPool(); }
+
+    /** Bootstrap priority, higher first. */
+    default int priority(String tenantId) { return get(tenantId).getPriority(); }
+
+    /** @see TenantProperties.TenantConfig#hostKey() */
+    default String hostKey(String tenantId) { return get(tenantId).hostKey(); }
 
-    @Getter
-    private final Map<String, TenantProperties.TenantConfig> tenantMap = new ConcurrentHashMap<>();
+    /** @return {@code false} if a tenant with the same id is already registered */
+    boolean register(TenantProperties.TenantConfig cfg);
 
-    public TenantRegistry() {
-        try {
-            var resolver = new PathMatchingResourcePatternResolver();
+    /**
+     * {@link #register} for many tenants, re-indexing once: each one is added
+     * only if its id is still free (also within {@code cfgs}).
+     *
+     * @return the configs that were registered, in order
+     */
+    List<TenantProperties.TenantConfig> registerAll(Collection<TenantProperties.TenantConfig> cfgs);
 
-            // first look for any tenants-*.yml (e.g. tenants-big.yml)
-            Resource[] dashResources = resolver.getResources("classpath*:**/tenants-*.yml");
-            Resource[] toLoad = dashResources.length > 0
-                    // if we found any, use only those
-                    ? dashResources
-                    // otherwise fall back to the classic tenants.yml
-                    : resolver.getResources("classpath*:**/tenants.yml");
+    /** @return the removed tenant, or {@code null} if it was not registered */
+    TenantProperties.TenantConfig unregister(String tenantId);
 
-            // prefer external files (so test’s tenants-big.yml on disk wins over jars)
-            var external = Arrays.stream(toLoad)
-                    .filter(r -> {
-                        try {
-                            return "file".equals(r.getURL().getProtocol());
-                        } catch (IOException e) {
-                            throw new RuntimeException(e);
-                        }
-                    })
-                    .toList();
-            var resources = external.isEmpty() ? List.of(toLoad) : external;
+    /**
+     * Adds or replaces {@code upserts} and removes {@code removals} as one
+     * change, so the id index (or column snapshot) is rebuilt once.
+     */
+    void apply(Collection<TenantProperties.TenantConfig> upserts, Collection<String> removals);
 
-            Yaml yaml = new Yaml();
-            for (var res : resources) {
-                try (InputStream in = res.getInputStream()) {
-                    var props = yaml.loadAs(in, TenantProperties.class);
-                    props.getTenants().forEach(cfg -> {
-                        log.info("Registering tenant {} (from {})", cfg.getId(), res.getFilename());
-                        tenantMap.put(cfg.getId(), cfg);
-                    });
-                }
-            }
-        } catch (Exception e) {
-            throw new IllegalStateException("Failed to load tenant descriptors", e);
-        }
-    }
+    /**
+     * The registry's own instance of {@code tenantId}, so ids taken from
+     * requests are not retained by caches; unknown ids are returned as-is.
+     */
+    String canonicalId(String tenantId);
 
-    public TenantProperties.TenantConfig get(String tenantId) {
-        TenantProperties.TenantConfig cfg = tenantMap.get(tenantId);
-        if (cfg == null) throw new UnknownTenantException(tenantId);
-        return cfg;
-    }
+    /** Registered id equal to {@code chars[from, to)}, or {@code null} – no substring is created. */
+    String canonicalId(CharSequence chars, int from, int to);
 }
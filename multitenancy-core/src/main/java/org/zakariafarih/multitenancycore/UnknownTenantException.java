@@ -3,9 +3,26 @@ package org.zakariafarih.multitenancycore;
 /**
  * Thrown when a request refers to a tenant that is not present
  * in the registry.  Controllers may translate it to 404/400.
+ * {@link #of} leaves out the stack trace while a {@link TenantFilter}
+ * request is served: there it reports bad client input, and garbage
+ * traffic should not pay for a stack walk.
  */
 public class UnknownTenantException extends RuntimeException {
     public UnknownTenantException(String tenantId) {
-        super("Unknown tenant: " + tenantId);
+        this(tenantId, true);
+    }
+
+    protected UnknownTenantException(String tenantId, boolean stackTrace) {
+        super("Unknown tenant: " + tenantId, null, true, stackTrace);
+    }
+
+    /** Without a stack trace. */
+    public static UnknownTenantException stackless(String tenantId) {
+        return new UnknownTenantException(tenantId, false);
+    }
+
+    /** Stackless on a request thread of {@link TenantFilter}, with a stack trace anywhere else. */
+    public static UnknownTenantException of(String tenantId) {
+        return new UnknownTenantException(tenantId, !TenantContext.inRequest());
     }
 }
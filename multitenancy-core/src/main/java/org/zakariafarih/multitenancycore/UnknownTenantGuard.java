@@ -0,0 +1,74 @@
+package org.zakariafarih.multitenancycore;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded negative cache of tenant ids recently rejected as unknown.
+ *
+ * Each entry lives for {@code negative-cache-ttl} from its first rejection
+ * (fixed window) and counts the hits in that window; past
+ * {@code unknown-rate-limit} the id is answered with 429 instead of 404.
+ * Per-id counters are registered only while the id is cached, so meter
+ * cardinality is bounded by {@code negative-cache-size}.
+ */
+@Slf4j
+public class UnknownTenantGuard {
+
+    private record Strike(AtomicInteger hits, Counter counter) {}
+
+    private final MultitenancyResolutionProperties props;
+    private final MeterRegistry                    meters;
+    private final Cache<String, Strike>            recent;
+    private final Counter                          throttled;
+
+    public UnknownTenantGuard(MultitenancyResolutionProperties props, MeterRegistry meters) {
+        this.props  = props;
+        this.meters = meters;
+        this.recent = Caffeine.newBuilder()
+                .maximumSize(props.getNegativeCacheSize())
+                .expireAfterWrite(props.getNegativeCacheTtl())
+                .removalListener((String id, Strike s, RemovalCause cause) -> {
+                    if (s != null) meters.remove(s.counter());
+                })
+                .build();
+
+        this.throttled = Counter.builder("tenant.unknown.throttled")
+                .description("Unknown-tenant requests answered with 429")
+                .register(meters);
+        Gauge.builder("tenant.unknown.tracked", recent, Cache::estimatedSize)
+                .description("Unknown tenant ids currently in the negative cache")
+                .register(meters);
+    }
+
+    /** Records a rejection of {@code tenantId} and returns the status to answer with. */
+    public HttpStatus reject(String tenantId) {
+        Strike strike = recent.get(tenantId, id -> new Strike(new AtomicInteger(),
+                Counter.builder("tenant.unknown.rejections")
+                        .description("Requests rejected for an unknown tenant id")
+                        .tag("tenant", id)
+                        .register(meters)));
+        strike.counter().increment();
+
+        int hits = strike.hits().incrementAndGet();
+        if (hits == 1) log.debug("Unknown tenant id {}", tenantId);
+
+        int limit = props.getUnknownRateLimit();
+        if (limit > 0 && hits > limit) {
+            throttled.increment();
+            return HttpStatus.TOO_MANY_REQUESTS;
+        }
+        return HttpStatus.NOT_FOUND;
+    }
+
+    /** Retry-After (seconds) for throttled ids: one window, after which the count restarts. */
+    public long retryAfterSeconds() { return Math.max(1, props.getNegativeCacheTtl().toSeconds()); }
+}
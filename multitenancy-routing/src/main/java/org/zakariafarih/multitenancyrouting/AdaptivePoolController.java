@@ -0,0 +1,198 @@
+package org.zakariafarih.multitenancyrouting;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.zakariafarih.multitenancycore.MultitenancyPoolProperties;
+import org.zakariafarih.multitenancycore.TenantRegistry;
+import org.zakariafarih.multitenancycore.UnknownTenantException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
+
+/**
+ * Resizes live tenant pools from their {@link HikariPoolMXBean} readings.
+ *
+ * Every {@code adaptive-interval} the pools of each database host share the
+ * host budget max-min fairly in three passes: every pool gets
+ * {@code min-pool-size}, then its demand (active + awaiting + 1 headroom),
+ * then whatever is left up to its configured size. Hosts without a budget
+ * keep the configured sizes. New sizes are reported to the
+ * {@link HostConnectionBudget}, if any, so its reservations stay accurate.
+ *
+ * Metrics per host: {@code tenant.pool.budget}, {@code tenant.pool.budget.allocated}
+ * and {@code tenant.pool.budget.demand}.
+ */
+@Slf4j
+public class AdaptivePoolController implements SmartInitializingSingleton, DisposableBean {
+
+    private record Slot(String tenant, HikariDataSource ds, int floor, int want, int ceiling) {}
+
+    private static final class HostStats {
+        volatile int budget;
+        volatile int allocated;
+        volatile int demand;
+    }
+
+    private final TenantDataSourceManager    dsm;
+    private final TenantRegistry             registry;
+    private final MultitenancyPoolProperties props;
+    private final MeterRegistry              meters;
+    private final HostConnectionBudget       budget;       // null = no reservations to update
+    private final Map<String, HostStats>     hosts = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("tenant-pool-sizing").daemon(true).factory());
+
+    public AdaptivePoolController(TenantDataSourceManager    dsm,
+                                  TenantRegistry             registry,
+                                  MultitenancyPoolProperties props,
+                                  MeterRegistry              meters) {
+        this(dsm, registry, props, meters, null);
+    }
+
+    public AdaptivePoolController(TenantDataSourceManager    dsm,
+                                  TenantRegistry             registry,
+                                  MultitenancyPoolProperties props,
+                                  MeterRegistry              meters,
+                                  HostConnectionBudget       budget) {
+        this.dsm      = dsm;
+        this.registry = registry;
+        this.props    = props;
+        this.meters   = meters;
+        this.budget   = budget;
+    }
+
+    /* ───────────── lifecycle ───────────── */
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        long every = props.getAdaptiveInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                rebalance();
+            } catch (Exception ex) {
+                log.warn("Pool rebalance failed: {}", ex.getMessage());
+            }
+        }, every, every, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    /* ───────────── sizing ───────────── */
+
+    /** One sizing round over every live pool; runs on the scheduler, callable directly. */
+    public void rebalance() {
+        Map<String, List<Slot>> byHost = new HashMap<>();
+        dsm.livePools().forEach((tenant, ds) -> {
+            if (!(ds instanceof HikariDataSource hds) || hds.isClosed()) return;
+            HikariPoolMXBean pool = hds.getHikariPoolMXBean();
+            if (pool == null) return;
+
+            int ceiling;
+            String host;
+            try {
+                ceiling = dsm.configuredMaxPoolSize(tenant);         // no descriptor materialised
+                host    = registry.hostKey(tenant);
+            } catch (UnknownTenantException removed) {
+                return;                                              // unregistered meanwhile
+            }
+            int floor   = Math.min(props.getMinPoolSize(), ceiling);
+            int demand  = pool.getActiveConnections() + pool.getThreadsAwaitingConnection() + 1;
+            byHost.computeIfAbsent(host, h -> new ArrayList<>())
+                    .add(new Slot(tenant, hds, floor, Math.max(floor, Math.min(demand, ceiling)), ceiling));
+        });
+        byHost.forEach(this::rebalanceHost);
+    }
+
+    private void rebalanceHost(String host, List<Slot> slots) {
+        int budget = props.budgetFor(host);
+        int[] size = new int[slots.size()];
+
+        if (budget <= 0) {
+            for (int i = 0; i < size.length; i++) size[i] = slots.get(i).ceiling();
+        } else {
+            int left = budget;
+            for (int i = 0; i < size.length; i++) {
+                size[i] = slots.get(i).floor();
+                left   -= size[i];
+            }
+            if (left < 0) {
+                log.warn("Host {}: {} pools at min-pool-size already exceed the budget of {}",
+                        host, slots.size(), budget);
+            }
+            left = fill(slots, size, Slot::want, left);
+            fill(slots, size, Slot::ceiling, left);
+        }
+
+        int allocated = 0, demand = 0;
+        for (int i = 0; i < size.length; i++) {
+            resize(slots.get(i), size[i]);
+            allocated += size[i];
+            demand    += slots.get(i).want();
+        }
+
+        HostStats stats = hosts.computeIfAbsent(host, this::registerHost);
+        stats.budget    = budget;
+        stats.allocated = allocated;
+        stats.demand    = demand;
+    }
+
+    /** Round-robin, one connection at a time: max-min fair up to {@code cap}. */
+    private static int fill(List<Slot> slots, int[] size, ToIntFunction<Slot> cap, int left) {
+        boolean progress = true;
+        while (left > 0 && progress) {
+            progress = false;
+            for (int i = 0; i < size.length && left > 0; i++) {
+                if (size[i] < cap.applyAsInt(slots.get(i))) {
+                    size[i]++;
+                    left--;
+                    progress = true;
+                }
+            }
+        }
+        return left;
+    }
+
+    private void resize(Slot slot, int size) {
+        HikariDataSource ds = slot.ds();
+        int current = ds.getMaximumPoolSize();
+        if (size == current) return;
+
+        ds.getHikariConfigMXBean().setMaximumPoolSize(size);
+        if (budget != null) budget.resized(slot.tenant(), size);
+        HikariPoolMXBean pool = ds.getHikariPoolMXBean();
+        if (size < current && pool != null && pool.getTotalConnections() > size) {
+            pool.softEvictConnections();    // idle ones close now, busy ones on return
+        }
+        log.debug("Tenant {} pool resized {} → {}", slot.tenant(), current, size);
+    }
+
+    private HostStats registerHost(String host) {
+        HostStats stats = new HostStats();
+        Gauge.builder("tenant.pool.budget", stats, s -> s.budget)
+                .description("Connection budget of the database host (0 = unlimited)")
+                .tag("host", host).register(meters);
+        Gauge.builder("tenant.pool.budget.allocated", stats, s -> s.allocated)
+                .description("Sum of tenant maximumPoolSize values on the host")
+                .tag("host", host).register(meters);
+        Gauge.builder("tenant.pool.budget.demand", stats, s -> s.demand)
+                .description("Connections the host's tenants currently want (active + awaiting + headroom)")
+                .tag("host", host).register(meters);
+        return stats;
+    }
+}
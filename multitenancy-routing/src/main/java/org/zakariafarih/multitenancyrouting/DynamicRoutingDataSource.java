@@ -1,6 +1,8 @@
 package org.zakariafarih.multitenancyrouting;
 
 import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.zakariafarih.multitenancycore.TenantContext;
 
 import javax.sql.DataSource;
@@ -12,23 +14,57 @@ import java.sql.Wrapper;
  * Delegates every call to the tenant-specific DataSource looked-up *lazily*
  * via {@link TenantDataSourceManager}.  Supports {@link Wrapper} contract,
  * enabling Hibernate & JdbcTemplate to unwrap to the vendor class.
+ * With a {@link TenantConnectionGate} every checkout first queues on the
+ * tenant's fair semaphore; with a {@link HostConnectionBudget} it then
+ * queues on its database host's (see {@link TenantCheckout}).
+ *
+ * Inside a transaction the resolved pool is bound as a synchronization
+ * resource, so repeated lookups skip the pool cache (and its access
+ * bookkeeping) until the transaction completes.
  */
 public class DynamicRoutingDataSource extends AbstractDataSource implements Wrapper {
 
     private final TenantDataSourceManager dsManager;
+    private final TenantCheckout          checkout;
+
+    /* private key – `this` could clash with a DataSourceTransactionManager's ConnectionHolder */
+    private final Object bindingKey = new Object();
+
+    private record Binding(String tenant, DataSource ds) {}
 
     public DynamicRoutingDataSource(TenantDataSourceManager dsManager) {
+        this(dsManager, (TenantConnectionGate) null);
+    }
+
+    public DynamicRoutingDataSource(TenantDataSourceManager dsManager, TenantConnectionGate gate) {
+        this(dsManager, gate, null);
+    }
+
+    public DynamicRoutingDataSource(TenantDataSourceManager dsManager,
+                                    TenantConnectionGate    gate,
+                                    HostConnectionBudget    budget) {
+        this(dsManager, new TenantCheckout(dsManager, gate, budget));
+    }
+
+    public DynamicRoutingDataSource(TenantDataSourceManager dsManager, TenantCheckout checkout) {
         this.dsManager = dsManager;
+        this.checkout  = checkout;
     }
 
     @Override
     public Connection getConnection() throws SQLException {
-        return lookup().getConnection();
+        if (checkout.isDirect()) return lookup().getConnection();
+        String tenant = TenantContext.getRequired();
+        DataSource ds = lookup(tenant);
+        return checkout.getConnection(tenant, ds, ds::getConnection);
     }
 
     @Override
     public Connection getConnection(String username, String password) throws SQLException {
-        return lookup().getConnection(username, password);
+        if (checkout.isDirect()) return lookup().getConnection(username, password);
+        String tenant = TenantContext.getRequired();
+        DataSource ds = lookup(tenant);
+        return checkout.getConnection(tenant, ds, () -> ds.getConnection(username, password));
     }
 
     /* ---------- Wrapper contract ---------- */
@@ -55,6 +91,28 @@ public class DynamicRoutingDataSource extends AbstractDataSource implements Wrap
     /* ---------- internal ---------- */
 
     private DataSource lookup() {
-        return dsManager.get(TenantContext.getRequired());
+        return lookup(TenantContext.getRequired());
+    }
+
+    private DataSource lookup(String tenant) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return dsManager.get(tenant);
+        }
+        Object bound = TransactionSynchronizationManager.getResource(bindingKey);
+        if (bound instanceof Binding b) {
+            // tenant switched mid-transaction: resolve directly, keep the original binding
+            return b.tenant().equals(tenant) ? b.ds() : dsManager.get(tenant);
+        }
+
+        Binding binding = new Binding(tenant, dsManager.get(tenant));
+        TransactionSynchronizationManager.bindResource(bindingKey, binding);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override public void suspend() { TransactionSynchronizationManager.unbindResourceIfPossible(bindingKey); }
+            @Override public void resume()  { TransactionSynchronizationManager.bindResource(bindingKey, binding); }
+            @Override public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(bindingKey);
+            }
+        });
+        return binding.ds();
     }
 }
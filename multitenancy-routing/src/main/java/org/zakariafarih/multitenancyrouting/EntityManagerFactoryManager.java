@@ -2,18 +2,41 @@ package org.zakariafarih.multitenancyrouting;
 
 import jakarta.persistence.EntityManagerFactory;
 import lombok.NonNull;
-import lombok.RequiredArgsConstructor;
 import org.zakariafarih.multitenancycore.EMFProvider;
 
 import javax.sql.DataSource;
+import java.util.Map;
 
-@RequiredArgsConstructor
+/**
+ * Hands out the EntityManagerFactory for a (tenant, schema) pair.
+ *
+ * With {@code tenancy} settings present the metamodel is shared per schema and
+ * the returned factory is a tenant-bound view; otherwise one EMF is built per
+ * tenant|schema on top of the tenant's own DataSource.
+ */
 public class EntityManagerFactoryManager {
 
-    private final EMFProvider emfProvider;
-    private final @NonNull String[] packagesToScan;
+    private final EMFProvider         emfProvider;
+    private final String[]            packagesToScan;
+    private final Map<String, Object> tenancy;
+
+    public EntityManagerFactoryManager(EMFProvider emfProvider, @NonNull String[] packagesToScan) {
+        this(emfProvider, packagesToScan, null);
+    }
+
+    public EntityManagerFactoryManager(EMFProvider emfProvider,
+                                       @NonNull String[] packagesToScan,
+                                       Map<String, Object> tenancy) {
+        this.emfProvider    = emfProvider;
+        this.packagesToScan = packagesToScan;
+        this.tenancy        = tenancy;
+    }
 
     public EntityManagerFactory get(DataSource ds, String tenantId, String schema) {
-        return emfProvider.get(ds, tenantId, schema, packagesToScan);
+        return isShared()
+                ? emfProvider.getShared(tenantId, schema, packagesToScan, tenancy)
+                : emfProvider.get(ds, tenantId, schema, packagesToScan);
     }
+
+    public boolean isShared() { return tenancy != null; }
 }
@@ -0,0 +1,243 @@
+package org.zakariafarih.multitenancyrouting;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.zakariafarih.multitenancycore.MultitenancyPoolProperties;
+import org.zakariafarih.multitenancyrouting.TenantConnectionGate.ConnectionSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps the connections all tenant pools on one database host may use together.
+ *
+ * <ul>
+ *   <li><b>Pool creation</b> – a new pool reserves its {@code maximumPoolSize}
+ *       from the host budget. It may borrow beyond its fair share
+ *       ({@code budget / pools}) while the budget has room; once it is short,
+ *       pools above their fair share are shrunk back to it.</li>
+ *   <li><b>Checkout</b> – a fair per-host semaphore with {@code budget}
+ *       permits, so pools still draining after a shrink cannot push the host
+ *       over its limit.</li>
+ * </ul>
+ *
+ * Hosts without a budget are passed through untouched. Metrics per host:
+ * {@code tenant.host.budget.saturation} (checked-out / budget),
+ * {@code tenant.host.budget.reserved} and {@code tenant.host.budget.timeouts}.
+ */
+@Slf4j
+public class HostConnectionBudget {
+
+    private static final class Host {
+        final String    key;
+        final int       budget;
+        final Semaphore checkout;
+        final Counter   timeouts;
+        final Map<String, Integer>          sizes = new HashMap<>();   // guarded by this
+        final Map<String, HikariDataSource> pools = new HashMap<>();   // guarded by this
+        volatile int reserved;
+
+        Host(String key, int budget, Counter timeouts) {
+            this.key      = key;
+            this.budget   = budget;
+            this.checkout = new Semaphore(budget, true);
+            this.timeouts = timeouts;
+        }
+    }
+
+    private final MultitenancyPoolProperties props;
+    private final MeterRegistry              meters;
+    private final Map<String, Host>          hosts      = new ConcurrentHashMap<>();
+    private final Map<String, Host>          tenantHost = new ConcurrentHashMap<>();
+
+    public HostConnectionBudget(MultitenancyPoolProperties props, MeterRegistry meters) {
+        this.props  = props;
+        this.meters = meters;
+    }
+
+    /** @return true if any host has a budget configured */
+    public boolean isEnforcing() {
+        return props.getHostConnectionBudget() > 0
+                || props.getHostBudgets().values().stream().anyMatch(b -> b != null && b > 0);
+    }
+
+    /* ───────────── pool creation ───────────── */
+
+    /**
+     * Reserves up to {@code requested} connections for a tenant's new pool.
+     *
+     * @return the {@code maximumPoolSize} the pool may be created with
+     */
+    public int reserve(String hostKey, String tenantId, int requested) {
+        Host h = host(hostKey);
+        if (h == null) return requested;
+        tenantHost.put(tenantId, h);
+
+        synchronized (h) {
+            Integer previous = h.sizes.remove(tenantId);
+            if (previous != null) h.reserved -= previous;
+            h.pools.remove(tenantId);
+
+            int fair = Math.max(1, h.budget / (h.sizes.size() + 1));
+            int want = Math.min(requested, Math.max(fair, h.budget - h.reserved));
+            int missing = want - (h.budget - h.reserved);
+            if (missing > 0) reclaim(h, fair, missing);
+
+            int granted = Math.min(want, h.budget - h.reserved);
+            if (granted < 1) {
+                log.warn("Host {} budget of {} exhausted – tenant {} gets a single connection",
+                        h.key, h.budget, tenantId);
+                granted = 1;
+            }
+            h.sizes.put(tenantId, granted);
+            h.reserved += granted;
+            return granted;
+        }
+    }
+
+    /** Registers the pool built from a reservation so it can be shrunk later. */
+    public void attach(String tenantId, HikariDataSource ds) {
+        Host h = tenantHost.get(tenantId);
+        if (h == null) return;
+        synchronized (h) {
+            if (h.sizes.containsKey(tenantId)) h.pools.put(tenantId, ds);
+        }
+    }
+
+    /**
+     * Routes a tenant's checkouts through its host without a reservation of
+     * its own – {@code SHARED_HOST} tenants use a pool reserved once for all.
+     */
+    public void join(String tenantId, String hostKey) {
+        Host h = host(hostKey);
+        if (h != null) tenantHost.put(tenantId, h);
+    }
+
+    /** Records a runtime resize (e.g. by {@link AdaptivePoolController}). */
+    public void resized(String tenantId, int size) {
+        Host h = tenantHost.get(tenantId);
+        if (h == null) return;
+        synchronized (h) {
+            Integer previous = h.sizes.replace(tenantId, size);
+            if (previous != null) h.reserved += size - previous;
+        }
+    }
+
+    /** Returns a tenant's reservation; called once its pool is closed or failed to build. */
+    public void release(String tenantId) {
+        Host h = tenantHost.remove(tenantId);
+        if (h == null) return;
+        synchronized (h) {
+            Integer previous = h.sizes.remove(tenantId);
+            if (previous != null) h.reserved -= previous;
+            h.pools.remove(tenantId);
+        }
+    }
+
+    /**
+     * Returns the reservation held by {@code ds} once that pool is closed.
+     * A no-op unless {@code ds} is the pool holding it: a rebuilt pool of
+     * the tenant may have taken the reservation over (or still be built on
+     * it), and a {@link #join joined} tenant holds none – its route to the
+     * host must survive the drain of its old wrapper.
+     */
+    public void release(String tenantId, DataSource ds) {
+        Host h = tenantHost.get(tenantId);
+        if (h == null) return;
+        synchronized (h) {
+            if (h.pools.get(tenantId) != ds) return;
+
+            Integer previous = h.sizes.remove(tenantId);
+            if (previous != null) h.reserved -= previous;
+            h.pools.remove(tenantId);
+            tenantHost.remove(tenantId, h);
+        }
+    }
+
+    /* ───────────── checkout ───────────── */
+
+    /** Obtains a connection once a permit of the tenant's host is free. */
+    public Connection getConnection(String tenantId, ConnectionSource source) throws SQLException {
+        Host h = tenantHost.get(tenantId);
+        if (h == null) return source.get();
+
+        long timeout = props.getConnectionGateTimeout().toNanos();
+        try {
+            if (!h.checkout.tryAcquire(timeout, TimeUnit.NANOSECONDS)) {
+                h.timeouts.increment();
+                throw new SQLTransientConnectionException("Host " + h.key + " connection budget of " + h.budget
+                        + " exhausted (" + h.checkout.getQueueLength() + " waiting)");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted waiting for a connection on host " + h.key, ex);
+        }
+
+        try {
+            return TenantConnectionGate.releasing(source.get(), h.checkout);
+        } catch (SQLException | RuntimeException ex) {
+            h.checkout.release();
+            throw ex;
+        }
+    }
+
+    /* ——— internal ——— */
+
+    private Host host(String hostKey) {
+        int budget = props.budgetFor(hostKey);
+        if (budget <= 0) return null;
+        return hosts.computeIfAbsent(hostKey, key -> register(key, budget));
+    }
+
+    /** Shrinks attached pools above {@code fair}, largest first, until {@code missing} is freed. */
+    private static void reclaim(Host h, int fair, int missing) {
+        List<Map.Entry<String, HikariDataSource>> donors = new ArrayList<>(h.pools.entrySet());
+        donors.sort(Comparator.comparingInt((Map.Entry<String, HikariDataSource> e) -> h.sizes.get(e.getKey()))
+                .reversed());
+
+        for (var donor : donors) {
+            if (missing <= 0) break;
+            int size = h.sizes.get(donor.getKey());
+            int take = Math.min(size - fair, missing);
+            if (take <= 0) continue;
+
+            HikariDataSource ds = donor.getValue();
+            ds.getHikariConfigMXBean().setMaximumPoolSize(size - take);
+            HikariPoolMXBean pool = ds.getHikariPoolMXBean();
+            if (pool != null && pool.getTotalConnections() > size - take) pool.softEvictConnections();
+
+            h.sizes.put(donor.getKey(), size - take);
+            h.reserved -= take;
+            missing    -= take;
+            log.debug("Host {}: reclaimed {} connection(s) from tenant {}", h.key, take, donor.getKey());
+        }
+    }
+
+    private Host register(String key, int budget) {
+        Host h = new Host(key, budget, Counter.builder("tenant.host.budget.timeouts")
+                .description("Checkouts rejected because the host connection budget stayed exhausted")
+                .tag("host", key).register(meters));
+        Gauge.builder("tenant.host.budget.saturation", h,
+                        x -> (double) (x.budget - x.checkout.availablePermits()) / x.budget)
+                .description("Checked-out connections as a fraction of the host budget")
+                .tag("host", key).register(meters);
+        Gauge.builder("tenant.host.budget.reserved", h, x -> x.reserved)
+                .description("Sum of tenant maximumPoolSize values reserved on the host")
+                .tag("host", key).register(meters);
+        return h;
+    }
+}
@@ -4,7 +4,9 @@ import com.github.benmanes.caffeine.cache.*;
 import jakarta.persistence.EntityManagerFactory;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.DisposableBean;
+import org.springframework.orm.jpa.EntityManagerFactoryInfo;
 import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.vendor.HibernateJpaDialect;
 import org.springframework.transaction.*;
 import org.zakariafarih.multitenancycore.*;
 
@@ -12,7 +14,10 @@ import javax.sql.DataSource;
 
 /**
  * One {@link JpaTransactionManager} per tenant, cached with Caffeine.
- * Eviction closes the underlying EntityManagerFactory to prevent leaks.
+ * Entries leave together with the tenant's pool; the EMF itself is closed
+ * by {@link EMFProvider} once that pool has drained, so transactions still
+ * running on it finish normally. EMFs are built over the tenant's pool as
+ * seen through {@link TenantCheckout}, so JPA checkouts are gated too.
  */
 @Slf4j
 public class RoutingJpaTransactionManager
@@ -21,28 +26,34 @@ public class RoutingJpaTransactionManager
     private final TenantDataSourceManager     dsm;
     private final EntityManagerFactoryManager emfm;
     private final String[]                    serviceSchemas;
-    private final MultitenancyPoolProperties  poolProps;
+    private final TenantCheckout              checkout;
 
-    /* holder keeps a reference to close EMF on eviction */
-    private record Holder(JpaTransactionManager tm, EntityManagerFactory emf) {}
+    /* unbounded – invalidated when the tenant's pool is evicted */
+    private final LoadingCache<String, Bound> cache;
 
-    private final LoadingCache<String, Holder> cache;
+    /** A transaction manager and the tenant pool its EMF was built over. */
+    private record Bound(DataSource pool, JpaTransactionManager tm) {}
 
     public RoutingJpaTransactionManager(TenantDataSourceManager dsm,
                                         EntityManagerFactoryManager emfm,
                                         String[] serviceSchemas,
                                         MultitenancyPoolProperties poolProps) {
+        this(dsm, emfm, serviceSchemas, poolProps, new TenantCheckout(dsm, null, null));
+    }
+
+    public RoutingJpaTransactionManager(TenantDataSourceManager dsm,
+                                        EntityManagerFactoryManager emfm,
+                                        String[] serviceSchemas,
+                                        MultitenancyPoolProperties poolProps,
+                                        TenantCheckout checkout) {
 
         this.dsm            = dsm;
+        this.checkout       = checkout;
         this.emfm           = emfm;
         this.serviceSchemas = serviceSchemas;
-        this.poolProps      = poolProps;
 
-        this.cache = Caffeine.newBuilder()
-                .maximumSize(poolProps.getMaxTenantPools())
-                .expireAfterAccess(poolProps.getIdleEviction())
-                .removalListener(this::closeOnEvict)
-                .build(this::create);
+        this.cache = Caffeine.newBuilder().build(this::create);
+        dsm.addEvictionListener((tenant, cause) -> cache.invalidate(tenant));
     }
 
     /* ---------- PlatformTransactionManager ---------- */
@@ -68,26 +79,30 @@ public class RoutingJpaTransactionManager
     @Override
     public void destroy() {
         cache.invalidateAll();
-        cache.cleanUp(); // forces removal listener -> EMF.close()
     }
 
     /* ---------- helpers ---------- */
 
-    private Holder create(String tenantId) {
-        DataSource ds = dsm.get(tenantId);
+    private Bound create(String tenantId) {
+        DataSource pool = dsm.get(tenantId);
+        DataSource ds = checkout.guard(tenantId, pool);
         String defaultSchema = serviceSchemas[0];
         EntityManagerFactory emf = emfm.get(ds, tenantId, defaultSchema);
-        return new Holder(new JpaTransactionManager(emf), emf);
-    }
-
-    private void closeOnEvict(String tenant, Holder holder, RemovalCause cause) {
-        if (holder != null && holder.emf().isOpen()) {
-            holder.emf().close();
-            log.info("Closed EMF for tenant {} (cause: {})", tenant, cause);
+        JpaTransactionManager tm = new JpaTransactionManager(emf);
+        if (!(emf instanceof EntityManagerFactoryInfo)) {
+            /* tenant-bound view over a shared metamodel – no vendor info to auto-detect */
+            tm.setJpaDialect(new HibernateJpaDialect());
         }
+        return new Bound(pool, tm);
     }
 
+    /* an entry created while its pool was being evicted outlives the invalidation – rebuild it */
     private JpaTransactionManager delegate() {
-        return cache.get(TenantContext.getRequired()).tm();
+        String tenant = TenantContext.getRequired();
+        Bound bound = cache.get(tenant);
+        if (!dsm.isCurrent(tenant, bound.pool()) && cache.asMap().remove(tenant, bound)) {
+            bound = cache.get(tenant);
+        }
+        return bound.tm();
     }
 }
@@ -1,11 +1,23 @@
 package org.zakariafarih.multitenancyrouting;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.cfg.MultiTenancySettings;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.orm.jpa.JpaProperties;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Condition;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.context.annotation.Conditional;
 import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.core.type.AnnotatedTypeMetadata;
 import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
 import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
 import org.springframework.transaction.PlatformTransactionManager;
@@ -13,6 +25,7 @@ import org.zakariafarih.multitenancycore.*;
 
 import javax.sql.DataSource;
 import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Auto-configuration that wires all routing / multi-tenant infrastructure.
@@ -35,43 +48,112 @@ public class RoutingMultitenancyAutoConfiguration {
             MultitenancyPoolProperties pool,
             MultitenancyProps props,
             MultitenancyMonitoringProperties monitor,
-            SchemaGenerator schemaGen) {
+            SchemaGenerator schemaGen,
+            HostConnectionBudget hostBudget,
+            ObjectProvider<MeterRegistry> meters) {
 
-        return new TenantDataSourceManager(registry, pool, props, monitor, schemaGen);
+        return new TenantDataSourceManager(registry, pool, props, monitor, schemaGen,
+                hostBudget.isEnforcing() ? hostBudget : null, meters.getIfAvailable(SimpleMeterRegistry::new));
+    }
+
+    /* ───────── per-host connection budget ───────── */
+    @Bean
+    @ConditionalOnMissingBean
+    public HostConnectionBudget hostConnectionBudget(ObjectProvider<MeterRegistry> meters) {
+        return new HostConnectionBudget(pool, meters.getIfAvailable(SimpleMeterRegistry::new));
+    }
+
+    /* ───────── background pool warm-up (opt-in) ───────── */
+    @Bean
+    @ConditionalOnProperty(prefix = "multitenancy.pool", name = "async-warmup", havingValue = "true")
+    public TenantPoolWarmer tenantPoolWarmer(
+            TenantDataSourceManager dsm,
+            ObjectProvider<MeterRegistry> meters) {
+
+        return new TenantPoolWarmer(dsm, registry, pool, meters.getIfAvailable(SimpleMeterRegistry::new));
+    }
+
+    /* ───────── adaptive pool sizing (opt-in) ───────── */
+    @Bean
+    @ConditionalOnProperty(prefix = "multitenancy.pool", name = "adaptive-sizing", havingValue = "true")
+    public AdaptivePoolController adaptivePoolController(
+            TenantDataSourceManager dsm,
+            HostConnectionBudget hostBudget,
+            ObjectProvider<MeterRegistry> meters) {
+
+        return new AdaptivePoolController(dsm, registry, pool, meters.getIfAvailable(SimpleMeterRegistry::new),
+                hostBudget.isEnforcing() ? hostBudget : null);
     }
 
     /* ───────── EMF cache helper ───────── */
     @Bean
-    public EntityManagerFactoryManager entityManagerFactoryManager() {
-        return new EntityManagerFactoryManager(emfProvider, props.getPackages());
+    public EntityManagerFactoryManager entityManagerFactoryManager(TenantDataSourceManager dsm,
+                                                                   TenantCheckout checkout,
+                                                                   @Qualifier("adminDataSource")
+                                                                   ObjectProvider<DataSource> adminDataSource) {
+        /* EMFs live and die with the tenant's pool unit */
+        emfProvider.addBuildListener((tenant, nanos) -> dsm.attach(tenant, pool.getEmfWeight()));
+        dsm.addDrainListener(emfProvider::retireTenant);     // closed once running transactions are done
+        emfProvider.setLivePool(dsm::isCurrent);              // builds racing an eviction are redone
+
+        if (!props.isSharedMetamodel()) {
+            return new EntityManagerFactoryManager(emfProvider, props.getPackages());
+        }
+        /* one SessionFactory per schema, connections picked per tenant by Hibernate */
+        return new EntityManagerFactoryManager(emfProvider, props.getPackages(), Map.of(
+                MultiTenancySettings.MULTI_TENANT_CONNECTION_PROVIDER, new TenantConnectionProvider(dsm, registry, checkout,
+                        adminDataSource.getIfAvailable()),
+                MultiTenancySettings.MULTI_TENANT_IDENTIFIER_RESOLVER, new TenantIdentifierResolver()));
+    }
+
+    /* ───────── per-tenant connection gate (virtual threads) ───────── */
+    @Bean
+    @Conditional(ConnectionGateCondition.class)
+    public TenantConnectionGate tenantConnectionGate(
+            TenantDataSourceManager dsm,
+            ObjectProvider<MeterRegistry> meters) {
+
+        return new TenantConnectionGate(dsm, pool.getDefaultMaxPoolSize(),
+                pool.getConnectionGateTimeout(), meters.getIfAvailable(SimpleMeterRegistry::new));
+    }
+
+    /* ───────── gate + host budget, shared by JDBC and JPA checkouts ───────── */
+    @Bean
+    public TenantCheckout tenantCheckout(TenantDataSourceManager dsm,
+                                         ObjectProvider<TenantConnectionGate> gate,
+                                         HostConnectionBudget hostBudget) {
+        return new TenantCheckout(dsm, gate.getIfAvailable(), hostBudget.isEnforcing() ? hostBudget : null);
     }
 
     /* ───────── routing DataSource (lazy) ───────── */
     @Bean
-    public DataSource routingDataSource(TenantDataSourceManager dsm) {
-        return new DynamicRoutingDataSource(dsm);
+    public DataSource routingDataSource(TenantDataSourceManager dsm, TenantCheckout checkout) {
+        return new DynamicRoutingDataSource(dsm, checkout);
     }
 
     @Bean(name = "dataSource")
     @Primary
-    public DataSource dataSource(TenantDataSourceManager dsm) {
+    public DataSource dataSource(TenantDataSourceManager dsm, TenantCheckout checkout) {
         return new org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy(
-                new DynamicRoutingDataSource(dsm));
+                new DynamicRoutingDataSource(dsm, checkout));
     }
 
     @Bean(name = "entityManagerFactory")
     @Primary
     public LocalContainerEntityManagerFactoryBean entityManagerFactory(
             DataSource dataSource,
-            JpaProperties jpa) {
+            JpaProperties jpa,
+            PersistenceUnitScanCache scanCache) {
 
         var fb = new LocalContainerEntityManagerFactoryBean();
         fb.setDataSource(dataSource);
-        fb.setPackagesToScan(props.getPackages());
+        fb.setManagedTypes(scanCache.get(props.getPackages()));
         fb.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
 
         fb.setJpaPropertyMap(new HashMap<>(jpa.getProperties()));
-        fb.getJpaPropertyMap().put("hibernate.default_schema", props.getSchemas()[0]);
+        if (pool.getMode() != MultitenancyPoolProperties.PoolMode.SHARED_HOST) {
+            fb.getJpaPropertyMap().put("hibernate.default_schema", props.getSchemas()[0]);
+        }
         return fb;
     }
 
@@ -80,10 +162,39 @@ public class RoutingMultitenancyAutoConfiguration {
     @Primary
     public PlatformTransactionManager routingTxManager(
             TenantDataSourceManager dsm,
-            EntityManagerFactoryManager emfm) {
+            EntityManagerFactoryManager emfm,
+            TenantCheckout checkout) {
 
         return new RoutingJpaTransactionManager(
-                dsm, emfm, props.getSchemas(), pool);
+                dsm, emfm, props.getSchemas(), pool, checkout);
+    }
+
+    /* ───────── descriptor hot reload ───────── */
+    @Bean
+    @ConditionalOnMissingBean
+    public TenantDescriptorReloader tenantDescriptorReloader(
+            TenantRegistry registry,
+            TenantDescriptorLoader loader,
+            TenantDataSourceManager dsm,
+            SchemaGenerator schemaGen,
+            ObjectProvider<TenantBootstrapper> bootstrapper,
+            MultitenancyRegistryProperties registryProps) {
+
+        return new TenantDescriptorReloader(registry, loader, dsm, schemaGen.getLedger(),
+                bootstrapper.getIfAvailable(), registryProps);
+    }
+
+    /* ───────── bulk onboarding ───────── */
+    @Bean
+    @ConditionalOnMissingBean
+    public TenantBatchOnboarder tenantBatchOnboarder(
+            TenantRegistry registry,
+            TenantDatabaseCreator dbCreator,
+            TenantDataSourceManager dsm,
+            SchemaGenerator schemaGen,
+            MultitenancyBootstrapProperties bootstrapProps) {
+
+        return new TenantBatchOnboarder(registry, dbCreator, dsm, schemaGen, props, bootstrapProps);
     }
 
     /* ───────── TenantRepositoryFactory ───────── */
@@ -91,8 +202,19 @@ public class RoutingMultitenancyAutoConfiguration {
     @ConditionalOnMissingBean
     public TenantRepositoryFactory tenantRepositoryFactory(
             TenantDataSourceManager dsm,
-            EntityManagerFactoryManager emfm) {
+            EntityManagerFactoryManager emfm,
+            TenantCheckout checkout) {
+
+        return new TenantRepositoryFactory(dsm, emfm, checkout);
+    }
 
-        return new TenantRepositoryFactory(dsm, emfm);
+    /** {@code multitenancy.pool.connection-gate}, defaulting to whether virtual threads are enabled. */
+    static class ConnectionGateCondition implements Condition {
+        @Override
+        public boolean matches(ConditionContext ctx, AnnotatedTypeMetadata md) {
+            Environment env = ctx.getEnvironment();
+            Boolean explicit = env.getProperty("multitenancy.pool.connection-gate", Boolean.class);
+            return explicit != null ? explicit : Threading.VIRTUAL.isActive(env);
+        }
     }
 }
@@ -0,0 +1,50 @@
+package org.zakariafarih.multitenancyrouting;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * A tenant's view of a pool shared by every tenant on the same host and database.
+ *
+ * Each checkout points the connection at the tenant's schema via
+ * {@link Connection#setSchema} – {@code SET search_path} on PostgreSQL,
+ * {@code SET SCHEMA} on H2. The shared pool is configured with a neutral
+ * default schema, so Hikari resets a connection on return and a connection
+ * that skipped this class can never run in the previous tenant's schema.
+ */
+public class SchemaSwitchingDataSource extends DelegatingDataSource {
+
+    private final String schema;
+
+    public SchemaSwitchingDataSource(DataSource sharedPool, String schema) {
+        super(sharedPool);
+        this.schema = schema;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return switched(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return switched(super.getConnection(username, password));
+    }
+
+    public String getSchema() { return schema; }
+
+    /* ——— internal ——— */
+
+    private Connection switched(Connection c) throws SQLException {
+        try {
+            c.setSchema(schema);
+            return c;
+        } catch (SQLException | RuntimeException ex) {
+            c.close();
+            throw ex;
+        }
+    }
+}
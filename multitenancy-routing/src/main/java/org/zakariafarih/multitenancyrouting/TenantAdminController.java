@@ -1,5 +1,7 @@
 package org.zakariafarih.multitenancyrouting;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
@@ -9,7 +11,12 @@ import org.springframework.web.bind.annotation.*;
 import org.zakariafarih.multitenancycore.*;
 
 import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -24,6 +31,9 @@ public class TenantAdminController {
     private final TenantDatabaseCreator      dbCreator;
     private final SchemaGenerator            schemaGen;
     private final MultitenancyProps          props;
+    private final TenantDescriptorReloader   reloader;
+    private final TenantBatchOnboarder       batchOnboarder;
+    private final ObjectMapper               mapper;
 
     /* ────── existing GET endpoints ───────────────────────────── */
 
@@ -52,28 +62,62 @@ public class TenantAdminController {
     public Map<String, Object> onboard(@RequestBody TenantProperties.TenantConfig payload) {
 
         String id = payload.getId();
-        if (registry.getTenantMap().containsKey(id)) {
+        if (!registry.register(payload)) {
             throw new IllegalArgumentException("Tenant '" + id + "' already exists");
         }
 
         try {
-            registry.getTenantMap().put(id, payload);
             log.info("▶️  Registering tenant {}", id);
 
             dbCreator.createDatabaseAndSchemaIfNotExists(payload, props.getSchemas());
 
             DataSource tenantDs = dsm.get(id);
             for (String schema : props.getSchemas()) {
-                schemaGen.migrate(tenantDs, schema);
+                schemaGen.migrate(id, tenantDs, schema);
             }
 
             log.info("✅  Tenant {} onboarded on-the-fly", id);
             return Map.of("tenant", id, "status", "CREATED");
 
         } catch (Exception ex) {
-            registry.getTenantMap().remove(id);
+            registry.unregister(id);
+            schemaGen.getLedger().forget(id);
             log.error("❌  Onboarding of {} failed – rolled back", id, ex);
             throw ex;
         }
     }
+
+    /* ────── POST /tenants/batch – bulk onboarding, NDJSON results ────── */
+
+    @PostMapping(path = "/batch",
+                 consumes = MediaType.APPLICATION_JSON_VALUE,
+                 produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void onboardBatch(@RequestBody List<TenantProperties.TenantConfig> payload,
+                             HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        Writer w = response.getWriter();
+        batchOnboarder.onboard(payload, outcome -> {
+            synchronized (w) {                   // one line per tenant, flushed as it completes
+                try {
+                    w.write(mapper.writeValueAsString(outcome));
+                    w.write('\n');
+                    w.flush();
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+        });
+    }
+
+    /* ────── POST /tenants/reload – re-read tenants*.yml ────── */
+
+    @PostMapping("/reload")
+    public Map<String, Object> reload() {
+        var result = reloader.reload();
+        return Map.of("added",     result.added(),
+                      "removed",   result.removed(),
+                      "changed",   result.changed(),
+                      "unchanged", result.unchanged());
+    }
 }
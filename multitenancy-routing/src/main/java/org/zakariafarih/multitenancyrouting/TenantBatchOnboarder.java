@@ -0,0 +1,151 @@
+package org.zakariafarih.multitenancyrouting;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.zakariafarih.multitenancycore.*;
+
+import javax.sql.DataSource;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Onboards thousands of tenants in one call ({@code POST /tenants/batch}).
+ *
+ * <ol>
+ *   <li>copies of the new tenants are registered with a single
+ *       {@link TenantRegistry#registerAll} – an id already taken (also by a
+ *       concurrent onboarding) is reported as a duplicate, never replaced;</li>
+ *   <li>per database host, one admin connection to that host runs every
+ *       CREATE DATABASE ({@link TenantDatabaseCreator#createDatabases});</li>
+ *   <li>schemas and Flyway run per tenant on a {@link TenantBootstrapScheduler}
+ *       – {@code multitenancy.bootstrap.parallelism} workers, at most
+ *       {@code per-host-concurrency} per host – while the next host group is
+ *       still creating its databases.</li>
+ * </ol>
+ * Each tenant's {@link Outcome} is reported as soon as it is known. A failed
+ * tenant is rolled back like a failed single onboarding and unregistered at
+ * once – only tenants this batch registered are ever removed.
+ */
+@Slf4j
+public class TenantBatchOnboarder implements DisposableBean {
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Outcome(String tenant, Status status, String error, long millis) {}
+
+    public enum Status { CREATED, DUPLICATE, FAILED }
+
+    private final TenantRegistry           registry;
+    private final TenantDatabaseCreator    dbCreator;
+    private final TenantDataSourceManager  dsm;
+    private final SchemaGenerator          schemaGen;
+    private final String[]                 schemas;
+    private final TenantBootstrapScheduler scheduler;
+
+    public TenantBatchOnboarder(TenantRegistry                  registry,
+                                TenantDatabaseCreator           dbCreator,
+                                TenantDataSourceManager         dsm,
+                                SchemaGenerator                 schemaGen,
+                                MultitenancyProps               props,
+                                MultitenancyBootstrapProperties bootstrap) {
+        this.registry  = registry;
+        this.dbCreator = dbCreator;
+        this.dsm       = dsm;
+        this.schemaGen = schemaGen;
+        this.schemas   = props.getSchemas();
+        this.scheduler = new TenantBootstrapScheduler(
+                "tenant-onboard", bootstrap.getParallelism(), bootstrap.getPerHostConcurrency());
+    }
+
+    /**
+     * Blocks until every tenant has an outcome; {@code sink} is called once
+     * per tenant, from several threads.
+     */
+    public void onboard(List<TenantProperties.TenantConfig> batch, Consumer<Outcome> sink) {
+        long start = System.nanoTime();
+        AtomicInteger failed = new AtomicInteger();
+        Consumer<Outcome> report = o -> {
+            if (o.status() == Status.FAILED) failed.incrementAndGet();
+            try {
+                sink.accept(o);
+            } catch (RuntimeException ex) {              // e.g. client went away – keep onboarding
+                log.debug("Could not report outcome of {}: {}", o.tenant(), ex.toString());
+            }
+        };
+
+        /* 1️⃣ register – duplicates (in the registry or the batch itself) are reported, not onboarded */
+        List<TenantProperties.TenantConfig> copies = new ArrayList<>(batch.size());
+        for (var cfg : batch) {
+            var copy = cfg.copy();                       // the caller's objects stay untouched
+            if (copy.getDbName() == null || copy.getDbName().isBlank()) copy.setDbName(copy.getId());
+            copies.add(copy);
+        }
+        List<TenantProperties.TenantConfig> fresh = registry.registerAll(copies);
+        Set<TenantProperties.TenantConfig> ours = Collections.newSetFromMap(new IdentityHashMap<>());
+        ours.addAll(fresh);
+        for (var cfg : copies) {
+            if (!ours.contains(cfg)) {
+                report.accept(new Outcome(cfg.getId(), Status.DUPLICATE, "Tenant already exists", 0));
+            }
+        }
+
+        /* 2️⃣ databases per host, 3️⃣ schemas + migrations pipelined behind them */
+        List<CompletableFuture<Void>> pending = new ArrayList<>(fresh.size());
+        Map<String, List<TenantProperties.TenantConfig>> byHost = fresh.stream()
+                .collect(Collectors.groupingBy(TenantProperties.TenantConfig::hostKey,
+                        LinkedHashMap::new, Collectors.toList()));
+        byHost.forEach((host, tenants) -> {
+            Map<String, Exception> dbFailures = dbCreator.createDatabases(tenants, schemas);
+            for (var cfg : tenants) {
+                Exception ex = dbFailures.get(cfg.getId());
+                if (ex != null) {
+                    report.accept(failure(cfg, ex, start));
+                } else {
+                    pending.add(scheduler.submit(cfg, () -> report.accept(provision(cfg, start))));
+                }
+            }
+        });
+        CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).join();
+
+        log.info("Batch onboarding of {} tenants finished in {} ms ({} failed)", batch.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), failed.get());
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.close();
+    }
+
+    /* ——— helpers ——— */
+
+    private Outcome provision(TenantProperties.TenantConfig cfg, long batchStart) {
+        String id = cfg.getId();
+        try {
+            dbCreator.ensureSchemas(cfg, schemas);
+            DataSource tenantDs = dsm.get(id);
+            for (String schema : schemas) {
+                schemaGen.migrate(id, tenantDs, schema);
+            }
+            return new Outcome(id, Status.CREATED, null, elapsedMs(batchStart));
+        } catch (Exception ex) {
+            return failure(cfg, ex, batchStart);
+        }
+    }
+
+    /** Rolls back a tenant registered by this batch. */
+    private Outcome failure(TenantProperties.TenantConfig cfg, Exception ex, long batchStart) {
+        registry.unregister(cfg.getId());
+        schemaGen.getLedger().forget(cfg.getId());
+        dsm.retire(cfg.getId());
+        log.error("❌  Onboarding of {} failed – rolled back", cfg.getId(), ex);
+        return new Outcome(cfg.getId(), Status.FAILED, String.valueOf(ex.getMessage()), elapsedMs(batchStart));
+    }
+
+    private static long elapsedMs(long since) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - since);
+    }
+}
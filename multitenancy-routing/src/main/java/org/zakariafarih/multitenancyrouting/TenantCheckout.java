@@ -0,0 +1,75 @@
+package org.zakariafarih.multitenancyrouting;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.zakariafarih.multitenancyrouting.TenantConnectionGate.ConnectionSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The path every tenant connection is checked out through: the tenant's
+ * {@link TenantConnectionGate} permit first, then its host's
+ * {@link HostConnectionBudget} permit.
+ *
+ * Used by {@link DynamicRoutingDataSource} and, via {@link #guard}, by
+ * Hibernate's {@link TenantConnectionProvider} and the per-tenant EMFs of the
+ * transaction manager and repositories, so JPA traffic is gated like plain
+ * JDBC. Without gate and budget every DataSource is used as is.
+ */
+public class TenantCheckout {
+
+    private final TenantConnectionGate    gate;       // null = no tenant gate
+    private final HostConnectionBudget    budget;     // null = no host limit
+    private final Map<String, Guarded>    views = new ConcurrentHashMap<>();
+
+    public TenantCheckout(TenantDataSourceManager dsm, TenantConnectionGate gate, HostConnectionBudget budget) {
+        this.gate   = gate;
+        this.budget = budget;
+        if (!isDirect()) dsm.addEvictionListener((tenant, cause) -> views.remove(tenant));
+    }
+
+    /** @return true if connections are taken straight from the tenant pools */
+    public boolean isDirect() { return gate == null && budget == null; }
+
+    /* tenant permit first – never hold a host permit while queueing behind the own tenant */
+    public Connection getConnection(String tenant, DataSource ds, ConnectionSource source) throws SQLException {
+        ConnectionSource bounded = budget == null ? source : () -> budget.getConnection(tenant, source);
+        return gate == null ? bounded.get() : gate.getConnection(tenant, ds, bounded);
+    }
+
+    /** {@code ds}, the tenant's pool, with every checkout going through {@link #getConnection}. */
+    public DataSource guard(String tenant, DataSource ds) {
+        if (isDirect()) return ds;
+        Guarded view = views.get(tenant);
+        if (view != null && view.getTargetDataSource() == ds) return view;
+        Guarded fresh = new Guarded(tenant, ds);      // first use, or the pool was rebuilt
+        views.put(tenant, fresh);
+        return fresh;
+    }
+
+    /* ——— internal ——— */
+
+    private final class Guarded extends DelegatingDataSource {
+        private final String tenant;
+
+        Guarded(String tenant, DataSource pool) {
+            super(pool);
+            this.tenant = tenant;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            DataSource pool = obtainTargetDataSource();
+            return TenantCheckout.this.getConnection(tenant, pool, pool::getConnection);
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            DataSource pool = obtainTargetDataSource();
+            return TenantCheckout.this.getConnection(tenant, pool, () -> pool.getConnection(username, password));
+        }
+    }
+}
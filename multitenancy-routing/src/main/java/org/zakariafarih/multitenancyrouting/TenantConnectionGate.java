@@ -0,0 +1,157 @@
+package org.zakariafarih.multitenancyrouting;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Per-tenant fair semaphore in front of each tenant's Hikari pool.
+ *
+ * Thousands of virtual threads hitting one tenant would otherwise all park
+ * inside Hikari's connection bag and time out in bursts; here they queue FIFO
+ * on a semaphore sized to the pool and a permit is handed over the moment a
+ * connection is closed. The semaphore follows the pool's current
+ * {@code maximumPoolSize} (adaptive sizing, host-budget reclaim) and is
+ * dropped when the tenant's pool is evicted.
+ */
+@Slf4j
+public class TenantConnectionGate {
+
+    private final Map<String, Permits> permits = new ConcurrentHashMap<>();
+    private final int      defaultPermits;
+    private final Duration timeout;
+
+    private final Timer   waitTimer;
+    private final Counter timeouts;
+
+    public TenantConnectionGate(TenantDataSourceManager dsm,
+                                int                     defaultPermits,
+                                Duration                timeout,
+                                MeterRegistry           meters) {
+        this.defaultPermits = defaultPermits;
+        this.timeout        = timeout;
+
+        this.waitTimer = Timer.builder("tenant.connection.gate.wait")
+                .description("Time spent waiting for a tenant connection permit")
+                .register(meters);
+        this.timeouts = Counter.builder("tenant.connection.gate.timeouts")
+                .description("Connection requests rejected after waiting for a permit")
+                .register(meters);
+        Gauge.builder("tenant.connection.gate.queued", this, TenantConnectionGate::queued)
+                .description("Threads currently waiting for a tenant connection permit")
+                .register(meters);
+
+        dsm.addEvictionListener((tenant, cause) -> permits.remove(tenant));
+    }
+
+    /** Obtains a connection from {@code ds} once a permit of {@code tenantId} is free. */
+    public Connection getConnection(String tenantId, DataSource ds, ConnectionSource source) throws SQLException {
+        int size = permitsFor(ds);
+        Permits gate = permits.computeIfAbsent(tenantId, id -> new Permits(size));
+        if (gate.size != size) gate.resize(size);
+
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = gate.tryAcquire(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted waiting for a connection of tenant " + tenantId, ex);
+        } finally {
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        if (!acquired) {
+            timeouts.increment();
+            throw new SQLTransientConnectionException("Tenant " + tenantId + " – no connection available within "
+                    + timeout.toMillis() + " ms (" + gate.getQueueLength() + " waiting)");
+        }
+
+        try {
+            return releasing(source.get(), gate);
+        } catch (SQLException | RuntimeException ex) {
+            gate.release();
+            throw ex;
+        }
+    }
+
+    /** Threads currently queued across all tenants. */
+    public int queued() {
+        int sum = 0;
+        for (Semaphore s : permits.values()) sum += s.getQueueLength();
+        return sum;
+    }
+
+    @FunctionalInterface
+    public interface ConnectionSource {
+        Connection get() throws SQLException;
+    }
+
+    /* ——— internal ——— */
+
+    /** Fair semaphore whose number of permits can follow its pool's size. */
+    private static final class Permits extends Semaphore {
+        volatile int size;
+
+        Permits(int size) {
+            super(size, true);
+            this.size = size;
+        }
+
+        /** Connections already out keep their permits; a shrink is absorbed as they are returned. */
+        synchronized void resize(int to) {
+            if (to > size) release(to - size);
+            else if (to < size) reducePermits(size - to);
+            size = to;
+        }
+    }
+
+    /** maximumPoolSize of the (possibly wrapped, e.g. shared-host) Hikari pool behind {@code ds}. */
+    private int permitsFor(DataSource ds) {
+        if (ds instanceof HikariDataSource hds) return hds.getMaximumPoolSize();
+        try {
+            if (ds.isWrapperFor(HikariDataSource.class)) return ds.unwrap(HikariDataSource.class).getMaximumPoolSize();
+        } catch (SQLException ignored) {
+            // not unwrappable – fall back to the default
+        }
+        return defaultPermits;
+    }
+
+    /** Returns the permit exactly once, on the first {@code close()}. */
+    static Connection releasing(Connection target, Semaphore gate) {
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(
+                TenantConnectionGate.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if ("close".equals(method.getName()) && method.getParameterCount() == 0) {
+                        try {
+                            target.close();
+                        } finally {
+                            if (released.compareAndSet(false, true)) gate.release();
+                        }
+                        return null;
+                    }
+                    try {
+                        return method.invoke(target, args);
+                    } catch (InvocationTargetException ex) {
+                        throw ex.getTargetException();
+                    }
+                });
+    }
+}
@@ -0,0 +1,59 @@
+package org.zakariafarih.multitenancyrouting;
+
+import org.hibernate.engine.jdbc.connections.spi.AbstractDataSourceBasedMultiTenantConnectionProviderImpl;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.zakariafarih.multitenancycore.TenantProperties;
+import org.zakariafarih.multitenancycore.TenantRegistry;
+
+import javax.sql.DataSource;
+
+/**
+ * Hibernate {@code MultiTenantConnectionProvider} backed by
+ * {@link TenantDataSourceManager}, so a single shared SessionFactory can
+ * borrow connections from each tenant's own Hikari pool – through the
+ * tenant's gate and host budget, like the routing DataSource.
+ * <p>
+ * Metadata access never goes through a tenant pool: building one would run
+ * the tenant's migrations and could evict a hot pool just to detect the
+ * dialect. The admin DataSource is used when there is one, else a single
+ * unpooled connection to a registered tenant's database.
+ */
+public class TenantConnectionProvider
+        extends AbstractDataSourceBasedMultiTenantConnectionProviderImpl<String> {
+
+    private final TenantDataSourceManager dsm;
+    private final TenantRegistry          registry;
+    private final TenantCheckout          checkout;
+    private final DataSource              metadataSource;   // nullable: admin DataSource
+
+    public TenantConnectionProvider(TenantDataSourceManager dsm, TenantRegistry registry) {
+        this(dsm, registry, new TenantCheckout(dsm, null, null), null);
+    }
+
+    public TenantConnectionProvider(TenantDataSourceManager dsm, TenantRegistry registry,
+                                    TenantCheckout checkout, DataSource metadataSource) {
+        this.dsm            = dsm;
+        this.registry       = registry;
+        this.checkout       = checkout;
+        this.metadataSource = metadataSource;
+    }
+
+    /** Used by Hibernate for metadata access (dialect detection, schema tooling). */
+    @Override
+    protected DataSource selectAnyDataSource() {
+        if (metadataSource != null) return metadataSource;
+
+        TenantProperties.TenantConfig any = registry.getTenantMap().values().stream()
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException(
+                        "No tenant registered – cannot obtain JDBC metadata for the shared metamodel"));
+        boolean h2 = (any.getHost() == null || any.getHost().isBlank());
+        return new DriverManagerDataSource(any.jdbcUrl(any.databaseName()), any.poolUser(),
+                h2 ? "" : (any.getDbPassword() != null ? any.getDbPassword() : ""));
+    }
+
+    @Override
+    protected DataSource selectDataSource(String tenantId) {
+        return checkout.guard(tenantId, dsm.get(tenantId));
+    }
+}
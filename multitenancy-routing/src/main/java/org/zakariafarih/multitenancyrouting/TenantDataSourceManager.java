@@ -3,18 +3,50 @@ package org.zakariafarih.multitenancyrouting;
 import com.github.benmanes.caffeine.cache.*;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
 import org.zakariafarih.multitenancycore.*;
 
 import javax.sql.DataSource;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 /**
  * Lazily builds and caches one HikariCP pool per tenant.
  * Pools are evicted LRU after {@code idleEviction}.
  *
+ * This cache is the single eviction unit per tenant: the tenant's EMFs,
+ * transaction manager and repositories have no bounds of their own and are
+ * dropped through {@link #addEvictionListener}. Each unit weighs 1 for the
+ * pool plus whatever was {@link #attach attached} to it (an EMF weighs
+ * {@code emfWeight}), bounded by {@code maxTenantWeight}; independently, at
+ * most {@code maxTenantPools} pools stay open – the coldest beyond that are
+ * evicted like a size eviction once a new pool is built. Listeners run on a
+ * single retirement thread before the pool is closed – never inside the
+ * cache call (possibly a dependant's own loader) that triggered the eviction.
+ *
+ * Evicted pools are retired, not slammed shut: new lookups already build a
+ * fresh pool while the old one drains – idle connections close at once, busy
+ * ones as they are returned – and it is closed once no connection is active
+ * or {@code drainTimeout} elapsed. Metrics: {@code tenant.pool.drain}
+ * (timer, tag {@code outcome=drained|timeout}) and {@code tenant.pool.draining}.
+ *
  * **FIX 2025-04-26**
  * Removed the `connectionInitSql` that executed
  * <code>SET SCHEMA&nbsp;clinic</code> _before_ the “clinic” schema was
@@ -26,28 +58,75 @@ import java.sql.Statement;
  * We now simply rely on the fully-qualified schema names in all entity
  * mappings (e.g. <code>@Table(schema = "clinic")</code>) and on Hibernate’s
  * <code>hibernate.default_schema</code> property where needed.
+ *
+ * With {@code multitenancy.pool.async-warmup} the cache loader runs on a
+ * dedicated executor: concurrent callers wait on the single in-flight
+ * future and request threads never execute Flyway themselves.
+ *
+ * With a {@link HostConnectionBudget} each pool's size is reserved from its
+ * database host's budget before the pool is built and returned once the
+ * evicted pool has drained and closed.
+ *
+ * In {@code SHARED_HOST} mode tenants on the same host and database share one
+ * pool; each tenant gets a {@link SchemaSwitchingDataSource} onto its own
+ * schema, migrated with the service migrations. Migrations and entity
+ * mappings must then be unqualified (no {@code CREATE TABLE clinic.x}, no
+ * {@code @Table(schema = …)}): a qualified table would be shared by every
+ * tenant, so a tenant whose migrations leave tables in the service schema
+ * itself is refused. The shared pool reserves its size from the host budget
+ * and every tenant on it checks out against that host.
  */
 @Slf4j
-public class TenantDataSourceManager {
+public class TenantDataSourceManager implements DisposableBean {
 
     private final TenantRegistry                   registry;
     private final MultitenancyPoolProperties       poolProps;
     private final MultitenancyMonitoringProperties monitorProps;
     private final String[]                         requiredSchemas;
     private final SchemaGenerator                  schemaGen;
+    private final HostConnectionBudget             hostBudget;       // null = sizes as configured
+
+    private final ExecutorService                  warmupExecutor;   // null = load on caller thread
+    private final ScheduledExecutorService         retireExecutor = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("tenant-retire").daemon(true).factory());
+    private final AsyncLoadingCache<String, DataSource> cache;
+    private final LoadingCache<String, DataSource>      syncView;
+    private final List<BiConsumer<String, RemovalCause>> evictionListeners = new CopyOnWriteArrayList<>();
+    private final List<Function<String, Runnable>>       drainListeners    = new CopyOnWriteArrayList<>();
+    private final Map<String, HikariDataSource>          sharedPools = new ConcurrentHashMap<>();   // SHARED_HOST only
+    private final Map<DataSource, Integer>               attached    = new ConcurrentHashMap<>();   // extra weight per pool
 
-    private final LoadingCache<String, DataSource> cache;
+    private final Timer         drained;
+    private final Timer         drainTimedOut;
+    private final AtomicInteger draining = new AtomicInteger();
 
     public TenantDataSourceManager(TenantRegistry                   registry,
                                    MultitenancyPoolProperties       poolProps,
                                    MultitenancyProps                appProps,
                                    MultitenancyMonitoringProperties monitorProps,
                                    SchemaGenerator                  schemaGen) {
+        this(registry, poolProps, appProps, monitorProps, schemaGen, null, new SimpleMeterRegistry());
+    }
+
+    public TenantDataSourceManager(TenantRegistry                   registry,
+                                   MultitenancyPoolProperties       poolProps,
+                                   MultitenancyProps                appProps,
+                                   MultitenancyMonitoringProperties monitorProps,
+                                   SchemaGenerator                  schemaGen,
+                                   HostConnectionBudget             hostBudget,
+                                   MeterRegistry                    meters) {
 
         this.registry     = registry;
         this.poolProps    = poolProps;
         this.monitorProps = monitorProps;
         this.schemaGen    = schemaGen;
+        this.hostBudget   = hostBudget;
+
+        this.drained       = drainTimer(meters, "drained");
+        this.drainTimedOut = drainTimer(meters, "timeout");
+        Gauge.builder("tenant.pool.draining", draining, AtomicInteger::get)
+                .description("Evicted tenant pools waiting for their active connections")
+                .register(meters);
 
         /* Fall back to monitor.expected-schemas when the application uses
            the hard-coded default ["public"] (meaning “not configured”). */
@@ -57,62 +136,365 @@ public class TenantDataSourceManager {
                 ? monitorProps.getExpectedSchemas().toArray(String[]::new)
                 : appProps.getSchemas();
 
+        this.warmupExecutor = poolProps.isAsyncWarmup()
+                ? Executors.newFixedThreadPool(poolProps.getWarmupThreads(),
+                        Thread.ofPlatform().name("tenant-warmup-", 0).daemon(true).factory())
+                : null;
+
         this.cache = Caffeine.newBuilder()
-                .maximumSize(poolProps.getMaxTenantPools())
+                .maximumWeight(poolProps.effectiveMaxTenantWeight())
+                .weigher((String tenant, DataSource ds) -> 1 + attached.getOrDefault(ds, 0))
                 .expireAfterAccess(poolProps.getIdleEviction())
+                .executor(warmupExecutor != null ? warmupExecutor : Runnable::run)
                 .evictionListener(this::closePool)
-                .build(this::create);
+                .buildAsync(this::create);
+        this.syncView = cache.synchronous();
     }
 
     /* ───────────────────────── public API ───────────────────────── */
 
-    public DataSource get(String tenantId) { return cache.get(tenantId); }
+    /** Blocks until the tenant's pool is ready (joining any in-flight build). */
+    public DataSource get(String tenantId) { return syncView.get(tenantId); }
+
+    /** Starts building the tenant's pool in the background if it is not cached yet. */
+    public CompletableFuture<DataSource> prefetch(String tenantId) { return cache.get(tenantId); }
+
+    /** @return true if the tenant's pool is cached or currently being built */
+    public boolean isCached(String tenantId) { return cache.getIfPresent(tenantId) != null; }
+
+    /**
+     * @return true if {@code ds} (or the pool a {@link DelegatingDataSource}
+     *         wraps) is the tenant's cached, fully built pool – false once it
+     *         has been evicted or retired
+     */
+    public boolean isCurrent(String tenantId, DataSource ds) {
+        CompletableFuture<DataSource> live = cache.getIfPresent(tenantId);
+        if (live == null || !live.isDone() || live.isCompletedExceptionally()) return false;
+        DataSource pool = live.join();
+        return pool == ds || ds instanceof DelegatingDataSource d && pool == d.getTargetDataSource();
+    }
+
+    /** Up to {@code limit} tenants ordered from most to least likely to be retained. */
+    public Set<String> hottest(int limit) {
+        return syncView.policy().eviction()
+                .map(e -> e.hottest(limit).keySet())
+                .orElseGet(Set::of);
+    }
+
+    /** Pools built so far (in-flight builds are skipped). */
+    public Map<String, DataSource> livePools() { return Map.copyOf(syncView.asMap()); }
+
+    /** maximumPoolSize a tenant's pool is created with: its own override, else the default. */
+    public int configuredMaxPoolSize(TenantProperties.TenantConfig cfg) {
+        return configuredMaxPoolSize(cfg.getMaxPool());
+    }
+
+    /** {@link #configuredMaxPoolSize(TenantProperties.TenantConfig)} read straight from the registry. */
+    public int configuredMaxPoolSize(String tenantId) {
+        return configuredMaxPoolSize(registry.maxPool(tenantId));
+    }
+
+    private int configuredMaxPoolSize(int override) {
+        return override > 0 ? override : poolProps.getDefaultMaxPoolSize();
+    }
+
+    /**
+     * Takes the tenant's pool out of the cache and retires it like an eviction
+     * (dependants notified, pool drained, then closed), so the next lookup
+     * builds a fresh one from the registry's current descriptor. A pool still
+     * being built is retired once it is ready.
+     *
+     * @return {@code false} if the tenant had no pool
+     */
+    public boolean retire(String tenantId) {
+        CompletableFuture<DataSource> pool = cache.asMap().remove(tenantId);
+        if (pool == null) return false;
+        pool.thenAccept(ds -> closePool(tenantId, ds, RemovalCause.EXPLICIT));
+        return true;
+    }
+
+    /** Adds {@code weight} (e.g. an EMF built for the tenant) to its current cache unit and re-weighs it. */
+    public void attach(String tenantId, int weight) {
+        syncView.asMap().computeIfPresent(tenantId, (id, ds) -> {
+            attached.merge(ds, weight, Integer::sum);
+            return ds;
+        });
+    }
+
+    /** Invoked on the retirement thread when a tenant's pool has been evicted or {@linkplain #retire retired} and starts draining. */
+    public void addEvictionListener(BiConsumer<String, RemovalCause> listener) {
+        evictionListeners.add(listener);
+    }
+
+    /**
+     * Like {@link #addEvictionListener}, but the listener may return a task
+     * (e.g. closing an EMF) that runs once the pool has drained, just before
+     * it is closed.
+     */
+    public void addDrainListener(Function<String, Runnable> listener) {
+        drainListeners.add(listener);
+    }
+
+    /**
+     * Closes every cached pool; builds still in flight close their pool once
+     * they finish. Pools still draining are closed at once, after their
+     * post-drain tasks (EMFs) have run.
+     */
+    @Override
+    public void destroy() {
+        if (warmupExecutor != null) warmupExecutor.shutdownNow();
+        retireExecutor.shutdown();                  // drains polling from here on close at their next poll
+        try {
+            if (!retireExecutor.awaitTermination(SHUTDOWN_WAIT_MS, TimeUnit.MILLISECONDS)) {
+                log.warn("Retired pools still closing after {} ms – leaving them to the retire thread", SHUTDOWN_WAIT_MS);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        cache.asMap().values().forEach(pool -> pool.thenAccept(ds -> {
+            if (ds instanceof HikariDataSource hds) hds.close();
+        }));
+        sharedPools.forEach((key, pool) -> {
+            pool.close();
+            if (hostBudget != null) hostBudget.release(sharedReservation(key));
+        });
+    }
 
     /* ───────────────────── cache helpers ────────────────────────── */
 
     private void closePool(String tenant, DataSource ds, RemovalCause cause) {
+        attached.remove(ds);                // this unit only – a rebuilt pool carries its own weight
+
+        long since = System.nanoTime();
+        Runnable retirement = () -> {
+            /* dependants first – new requests rebuild them on a fresh pool */
+            List<Runnable> afterDrain = new ArrayList<>();
+            for (Function<String, Runnable> l : drainListeners) {
+                try {
+                    Runnable task = l.apply(tenant);
+                    if (task != null) afterDrain.add(task);
+                } catch (RuntimeException ex) {
+                    log.warn("Drain listener failed for tenant {}", tenant, ex);
+                }
+            }
+            evictionListeners.forEach(l -> {
+                try {
+                    l.accept(tenant, cause);
+                } catch (RuntimeException ex) {
+                    log.warn("Eviction listener failed for tenant {}", tenant, ex);
+                }
+            });
+
+            if (ds instanceof HikariDataSource hds && hds.getHikariPoolMXBean() != null) {
+                hds.getHikariPoolMXBean().softEvictConnections();     // idle ones now, busy ones on return
+            }
+            draining.incrementAndGet();
+            drain(tenant, ds, cause, since, afterDrain);
+        };
+        try {
+            retireExecutor.execute(retirement);
+        } catch (RejectedExecutionException shuttingDown) {
+            retirement.run();                   // after destroy(): drain() closes at once
+        }
+    }
+
+    /** Polls on the retirement thread until the pool has no active connection or the drain timeout elapsed. */
+    private void drain(String tenant, DataSource ds, RemovalCause cause, long since, List<Runnable> afterDrain) {
+        long waited = System.nanoTime() - since;
+        boolean timedOut = waited >= poolProps.getDrainTimeout().toNanos();
+        if (ds instanceof HikariDataSource hds && !hds.isClosed() && !timedOut && !retireExecutor.isShutdown()
+                && hds.getHikariPoolMXBean() != null && hds.getHikariPoolMXBean().getActiveConnections() > 0) {
+            try {
+                retireExecutor.schedule(() -> drain(tenant, ds, cause, since, afterDrain),
+                        DRAIN_POLL_MS, TimeUnit.MILLISECONDS);
+                return;
+            } catch (RejectedExecutionException shuttingDown) {
+                log.debug("Shutting down – closing pool of tenant {} without waiting for its drain", tenant);
+            }
+        }
+
+        afterDrain.forEach(task -> {
+            try {
+                task.run();
+            } catch (RuntimeException ex) {
+                log.warn("Post-drain task failed for tenant {}", tenant, ex);
+            }
+        });
         if (ds instanceof HikariDataSource hds) hds.close();
-        log.info("Closed pool for tenant {} (cause: {})", tenant, cause);
+        if (hostBudget != null) hostBudget.release(tenant, ds);       // only now are its connections gone
+
+        draining.decrementAndGet();
+        (timedOut ? drainTimedOut : drained).record(waited, TimeUnit.NANOSECONDS);
+        if (timedOut) {
+            log.warn("Closed pool for tenant {} with connections still active after {} ms (cause: {})",
+                    tenant, TimeUnit.NANOSECONDS.toMillis(waited), cause);
+        } else {
+            log.info("Closed pool for tenant {} after draining {} ms (cause: {})",
+                    tenant, TimeUnit.NANOSECONDS.toMillis(waited), cause);
+        }
+    }
+
+    /** Evicts the coldest built pools beyond {@code maxTenantPools}, sparing the one just built. */
+    private void trimToPoolLimit(String built) {
+        /* the built pool may not be in the map yet – its loader can still be returning */
+        int open = cache.asMap().size() + (cache.asMap().containsKey(built) ? 0 : 1);
+        int excess = open - poolProps.getMaxTenantPools();
+        if (excess <= 0) return;
+        int candidates = excess + 1;
+        Map<String, DataSource> coldest = syncView.policy().eviction()
+                .map(e -> e.coldest(candidates))
+                .orElseGet(Map::of);
+        for (var e : coldest.entrySet()) {
+            if (excess == 0) break;
+            if (e.getKey().equals(built)) continue;
+            CompletableFuture<DataSource> pool = cache.asMap().get(e.getKey());
+            if (pool == null || !pool.isDone() || pool.isCompletedExceptionally()
+                    || pool.getNow(null) != e.getValue()) continue;
+            if (cache.asMap().remove(e.getKey(), pool)) {
+                closePool(e.getKey(), e.getValue(), RemovalCause.SIZE);
+                excess--;
+            }
+        }
+    }
+
+    private static Timer drainTimer(MeterRegistry meters, String outcome) {
+        return Timer.builder("tenant.pool.drain")
+                .description("Time from eviction until a tenant pool was closed")
+                .tag("outcome", outcome)
+                .register(meters);
     }
 
+    private static final long DRAIN_POLL_MS    = 50;
+    private static final long SHUTDOWN_WAIT_MS = 5_000;
+
     private DataSource create(String tenantId) {
         TenantProperties.TenantConfig cfg = registry.get(tenantId);
+        if (poolProps.getMode() == MultitenancyPoolProperties.PoolMode.SHARED_HOST) {
+            return createShared(tenantId, cfg);
+        }
 
-        String db  = (cfg.getDbName() != null && !cfg.getDbName().isBlank())
-                ? cfg.getDbName() : tenantId;
         boolean h2 = (cfg.getHost() == null || cfg.getHost().isBlank());
 
         HikariConfig hc = new HikariConfig();
         hc.setPoolName("tenant-" + tenantId + "-pool");
-        hc.setJdbcUrl(h2
-                ? "jdbc:h2:mem:%s;MODE=PostgreSQL;DB_CLOSE_DELAY=-1".formatted(db)
-                : "jdbc:postgresql://%s:%d/%s".formatted(cfg.getHost(), cfg.getPort(), db));
-        hc.setUsername(h2 ? "sa"
-                : (cfg.getDbUser()     != null ? cfg.getDbUser()     : "postgres"));
+        hc.setJdbcUrl(cfg.jdbcUrl(cfg.databaseName()));
+        hc.setUsername(cfg.poolUser());
         hc.setPassword(h2 ? ""
                 : (cfg.getDbPassword() != null ? cfg.getDbPassword() : ""));
         hc.setMinimumIdle(0);
-        hc.setMaximumPoolSize(cfg.getMaxPool() > 0
-                ? cfg.getMaxPool() : poolProps.getDefaultMaxPoolSize());
+        hc.setMaximumPoolSize(hostBudget != null
+                ? hostBudget.reserve(cfg.hostKey(), tenantId, configuredMaxPoolSize(cfg))
+                : configuredMaxPoolSize(cfg));
         hc.setIdleTimeout(cfg.getIdleTimeoutMs() > 0
                 ? cfg.getIdleTimeoutMs() : poolProps.getDefaultIdleTimeout().toMillis());
         hc.setValidationTimeout(poolProps.getValidationTimeout().toMillis());
 
         /* ⚠️  No `connectionInitSql` here – see class-level javadoc. */
 
-        HikariDataSource ds = new HikariDataSource(hc);
+        HikariDataSource ds = null;
+        try {
+            ds = new HikariDataSource(hc);
+            if (hostBudget != null) hostBudget.attach(tenantId, ds);
 
-        ensureSchemas(ds);
+            ensureSchemas(ds);
 
-        // run migrations once per pool
-        for (String schema : requiredSchemas) {
-            schemaGen.migrate(ds, schema);
+            // run migrations once per pool – skipped when the ledger says the tenant is current
+            for (String schema : requiredSchemas) {
+                schemaGen.migrate(tenantId, ds, schema);
+            }
+        } catch (RuntimeException ex) {
+            if (ds != null) ds.close();          // the next lookup retries with a fresh pool
+            if (hostBudget != null) hostBudget.release(tenantId);
+            throw ex;
         }
 
         log.info("Created datasource for tenant {}", tenantId);
+        try {
+            retireExecutor.execute(() -> trimToPoolLimit(tenantId));     // not inside the cache's compute
+        } catch (RejectedExecutionException shuttingDown) {
+            log.debug("Pool limit not enforced for tenant {}: shutting down", tenantId);
+        }
         return ds;
     }
 
+    /* ───────────────────── shared-host pools ───────────────────── */
+
+    private DataSource createShared(String tenantId, TenantProperties.TenantConfig cfg) {
+        String db = (cfg.getDbName() != null && !cfg.getDbName().isBlank())
+                ? cfg.getDbName() : poolProps.getSharedDatabase();
+        HikariDataSource pool = sharedPools.computeIfAbsent(cfg.hostKey() + '/' + db, key -> sharedPool(key, cfg, db));
+        if (hostBudget != null) hostBudget.join(tenantId, cfg.hostKey());
+
+        String schema = cfg.schemaName();
+        try (Connection c = pool.getConnection();
+             Statement  s = c.createStatement()) {
+            s.execute("CREATE SCHEMA IF NOT EXISTS \"" + schema.replace("\"", "\"\"") + '"');
+        } catch (SQLException e) {
+            log.warn("Schema init failed – ignored", e);
+        }
+
+        DataSource ds = new SchemaSwitchingDataSource(pool, schema);
+        for (String service : requiredSchemas) {
+            schemaGen.migrate(tenantId, ds, service, schema);
+            requireUnqualified(pool, service, schema);
+        }
+
+        log.info("Routed tenant {} to shared pool {} (schema {})", tenantId, pool.getPoolName(), schema);
+        return ds;
+    }
+
+    private HikariDataSource sharedPool(String key, TenantProperties.TenantConfig cfg, String db) {
+        boolean h2 = (cfg.getHost() == null || cfg.getHost().isBlank());
+
+        HikariConfig hc = new HikariConfig();
+        hc.setPoolName("shared-" + key + "-pool");
+        hc.setJdbcUrl(cfg.jdbcUrl(db));
+        hc.setUsername(cfg.poolUser());
+        hc.setPassword(h2 ? ""
+                : (cfg.getDbPassword() != null ? cfg.getDbPassword() : ""));
+        /* neutral schema: Hikari resets every returned connection to it */
+        hc.setSchema(h2 ? "PUBLIC" : "public");
+        hc.setMinimumIdle(0);
+        hc.setMaximumPoolSize(hostBudget != null
+                ? hostBudget.reserve(cfg.hostKey(), sharedReservation(key), poolProps.getDefaultMaxPoolSize())
+                : poolProps.getDefaultMaxPoolSize());
+        hc.setIdleTimeout(poolProps.getDefaultIdleTimeout().toMillis());
+        hc.setValidationTimeout(poolProps.getValidationTimeout().toMillis());
+
+        HikariDataSource ds = new HikariDataSource(hc);
+        if (hostBudget != null) hostBudget.attach(sharedReservation(key), ds);
+        log.info("Created shared pool for {}", key);
+        return ds;
+    }
+
+    /** Budget reservation of a shared pool – the pool, not its tenants, holds the connections. */
+    private static String sharedReservation(String key) {
+        return "shared:" + key;
+    }
+
+    /**
+     * Fails if the service schema itself holds tables in the shared database:
+     * a qualified migration ({@code CREATE TABLE clinic.patient}) bypasses the
+     * tenant schema and every tenant would read and write the same table.
+     */
+    private static void requireUnqualified(DataSource pool, String service, String tenantSchema) {
+        if (service.equalsIgnoreCase(tenantSchema)) return;
+        try (Connection c = pool.getConnection();
+             PreparedStatement q = c.prepareStatement(
+                     "SELECT TABLE_NAME FROM INFORMATION_SCHEMA.TABLES WHERE UPPER(TABLE_SCHEMA) = UPPER(?)")) {
+            q.setString(1, service);
+            try (ResultSet rs = q.executeQuery()) {
+                if (rs.next()) {
+                    throw new IllegalStateException("SHARED_HOST needs unqualified migrations, but table "
+                            + rs.getString(1) + " was created in the shared schema " + service
+                            + " instead of the tenant schema " + tenantSchema);
+                }
+            }
+        } catch (SQLException e) {
+            log.warn("Could not verify that schema {} holds no shared tables", service, e);
+        }
+    }
+
     /* ───────────────────── schema helper ────────────────────────── */
 
     private void ensureSchemas(DataSource ds) {
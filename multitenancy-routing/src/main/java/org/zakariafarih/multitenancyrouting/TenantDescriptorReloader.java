@@ -0,0 +1,179 @@
+package org.zakariafarih.multitenancyrouting;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.zakariafarih.multitenancycore.*;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Re-reads the tenant descriptors at runtime and reconciles only what changed.
+ *
+ * The new descriptors are diffed against the ids the files declared last
+ * time (tenants onboarded through the API are never removed by a reload):
+ * <ul>
+ *   <li>added – registered and queued on the {@link TenantBootstrapper};</li>
+ *   <li>removed – unregistered, dropped from the bootstrap queue if still
+ *       waiting there, their pool retired together with its EMFs,
+ *       transaction manager and repositories;</li>
+ *   <li>changed – re-registered; unless only {@code priority} changed, the
+ *       pool is retired so the next request builds one with the new settings
+ *       (migrations re-checked, since the database may have moved).</li>
+ * </ul>
+ * Comparing descriptors is linear in the tenant count; pool, EMF and
+ * migration work is proportional to the diff.
+ *
+ * Triggered by {@code POST /tenants/reload}, or by file changes when
+ * {@code multitenancy.registry.watch=true}.
+ */
+@Slf4j
+public class TenantDescriptorReloader implements SmartInitializingSingleton, DisposableBean {
+
+    public record Result(List<String> added, List<String> removed, List<String> changed, int unchanged) {}
+
+    private final TenantRegistry                 registry;
+    private final TenantDescriptorLoader         loader;
+    private final TenantDataSourceManager        dsm;
+    private final MigrationLedger                ledger;
+    private final TenantBootstrapper             bootstrapper;     // null = pools bootstrap lazily on first use
+    private final MultitenancyRegistryProperties props;
+
+    private String[]     declared;       // ids from the last load, guarded by this
+    private WatchService watchService;
+
+    public TenantDescriptorReloader(TenantRegistry                 registry,
+                                    TenantDescriptorLoader         loader,
+                                    TenantDataSourceManager        dsm,
+                                    MigrationLedger                ledger,
+                                    TenantBootstrapper             bootstrapper,
+                                    MultitenancyRegistryProperties props) {
+        this.registry     = registry;
+        this.loader       = loader;
+        this.dsm          = dsm;
+        this.ledger       = ledger;
+        this.bootstrapper = bootstrapper;
+        this.props        = props;
+        this.declared     = registry.getTenantMap().keySet().toArray(String[]::new);
+    }
+
+    public synchronized Result reload() {
+        long start = System.nanoTime();
+        Map<String, TenantProperties.TenantConfig> next = new LinkedHashMap<>();
+        loader.load().forEach(cfg -> next.put(cfg.getId(), cfg));
+
+        List<TenantProperties.TenantConfig> added   = new ArrayList<>();
+        List<TenantProperties.TenantConfig> changed = new ArrayList<>();
+        List<String>                        swapped = new ArrayList<>();
+        for (var cfg : next.values()) {
+            TenantProperties.TenantConfig old = registry.getTenantMap().get(cfg.getId());
+            if (old == null) {
+                added.add(cfg);
+            } else if (!old.equals(cfg)) {
+                changed.add(cfg);
+                if (!samePoolSettings(old, cfg)) swapped.add(cfg.getId());
+            }
+        }
+        List<String> removed = new ArrayList<>();
+        for (String id : declared) {
+            if (!next.containsKey(id) && registry.contains(id)) removed.add(id);
+        }
+
+        List<TenantProperties.TenantConfig> upserts = new ArrayList<>(added);
+        upserts.addAll(changed);
+        registry.apply(upserts, removed);
+        declared = next.keySet().stream().map(registry::canonicalId).toArray(String[]::new);
+
+        /* registry first: pools rebuilt after this point see the new descriptors */
+        List<String> stale = new ArrayList<>(removed);
+        stale.addAll(swapped);
+        if (bootstrapper != null && !removed.isEmpty()) bootstrapper.cancel(removed);
+        ledger.forget(stale);
+        stale.forEach(dsm::retire);
+        if (bootstrapper != null && !added.isEmpty()) bootstrapper.submit(added);
+
+        var result = new Result(added.stream().map(TenantProperties.TenantConfig::getId).toList(),
+                removed, changed.stream().map(TenantProperties.TenantConfig::getId).toList(),
+                next.size() - added.size() - changed.size());
+        log.info("Reloaded tenant descriptors in {} ms: {} added, {} removed, {} changed ({} pools swapped), {} unchanged",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), added.size(), removed.size(),
+                changed.size(), swapped.size(), result.unchanged());
+        return result;
+    }
+
+    /* ──────────────── file watch ──────────────── */
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!props.isWatch()) return;
+        Set<Path> dirs = new HashSet<>();
+        loader.files().forEach(f -> dirs.add(f.toAbsolutePath().getParent()));
+        if (dirs.isEmpty()) {
+            log.warn("multitenancy.registry.watch is on, but no tenant descriptor lives on the file system");
+            return;
+        }
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            for (Path dir : dirs) {
+                dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot watch tenant descriptors in " + dirs, e);
+        }
+        Thread.ofPlatform().name("tenant-descriptor-watch").daemon(true).start(this::watch);
+        log.info("Watching tenant descriptors in {}", dirs);
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        if (watchService != null) watchService.close();
+    }
+
+    /** Waits for a descriptor change, then for {@code watch-debounce} of quiet before reloading. */
+    private void watch() {
+        try {
+            while (true) {
+                if (!isDescriptorChange(watchService.take())) continue;
+                for (WatchKey more; (more = watchService.poll(props.getWatchDebounce().toMillis(),
+                        TimeUnit.MILLISECONDS)) != null; ) {
+                    isDescriptorChange(more);
+                }
+                try {
+                    reload();
+                } catch (RuntimeException ex) {
+                    log.error("Tenant descriptor reload failed – keeping the current tenants", ex);
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException stopped) {
+            log.debug("Tenant descriptor watch stopped");
+        }
+    }
+
+    private static boolean isDescriptorChange(WatchKey key) {
+        boolean relevant = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.context() instanceof Path p) {
+                String name = p.getFileName().toString();
+                relevant |= name.startsWith("tenants") && name.endsWith(".yml");
+            }
+        }
+        key.reset();
+        return relevant;
+    }
+
+    /** Everything a pool is built from; {@code priority} only orders bootstrap. */
+    private static boolean samePoolSettings(TenantProperties.TenantConfig a, TenantProperties.TenantConfig b) {
+        return Objects.equals(a.getDbName(), b.getDbName())
+                && Objects.equals(a.getDbUser(), b.getDbUser())
+                && Objects.equals(a.getDbPassword(), b.getDbPassword())
+                && Objects.equals(a.getHost(), b.getHost())
+                && a.getPort() == b.getPort()
+                && Objects.equals(a.getSchema(), b.getSchema())
+                && a.getMaxPool() == b.getMaxPool()
+                && a.getIdleTimeoutMs() == b.getIdleTimeoutMs();
+    }
+}
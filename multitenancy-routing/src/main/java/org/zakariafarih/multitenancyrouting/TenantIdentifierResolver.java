@@ -0,0 +1,26 @@
+package org.zakariafarih.multitenancyrouting;
+
+import org.hibernate.context.spi.CurrentTenantIdentifierResolver;
+import org.zakariafarih.multitenancycore.TenantContext;
+
+/**
+ * Feeds the request's tenant id (from {@link TenantContext}) to Hibernate
+ * whenever a session is opened on a shared SessionFactory without an
+ * explicit tenant identifier.
+ *
+ * Returns {@code null} when no tenant is bound: Hibernate consults the resolver
+ * even for sessions that set their tenant explicitly (tenant-bound views), and
+ * still rejects a session that ends up with no tenant at all.
+ */
+public class TenantIdentifierResolver implements CurrentTenantIdentifierResolver<String> {
+
+    @Override
+    public String resolveCurrentTenantIdentifier() {
+        return TenantContext.get();
+    }
+
+    @Override
+    public boolean validateExistingCurrentSessions() {
+        return true;
+    }
+}
@@ -0,0 +1,158 @@
+package org.zakariafarih.multitenancyrouting;
+
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.zakariafarih.multitenancycore.MultitenancyPoolProperties;
+import org.zakariafarih.multitenancycore.TenantRegistry;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the pools of the N most recently / frequently used tenants warm.
+ *
+ *  • at start-up the last persisted warm set (or the first N registry
+ *    tenants) is built in the background
+ *  • the warm set is refreshed periodically from the pool cache's own
+ *    access statistics (Caffeine "hottest" order)
+ *  • a warm tenant whose pool is evicted for size is rebuilt in the
+ *    background – once per refresh period, so warm tenants crowding each
+ *    other out of the cache do not thrash it; evicted again, or idled out,
+ *    it leaves the warm set
+ *
+ * Metrics: {@code tenant.pool.warm.set.size} and {@code tenant.pool.warmup}.
+ */
+@Slf4j
+public class TenantPoolWarmer implements SmartInitializingSingleton, DisposableBean {
+
+    private final TenantDataSourceManager    dsm;
+    private final TenantRegistry             registry;
+    private final MultitenancyPoolProperties props;
+    private final Timer                      warmupTimer;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("tenant-warm-set").daemon(true).factory());
+
+    private volatile Set<String> warmSet  = Set.of();
+    private final    Set<String> rewarmed = ConcurrentHashMap.newKeySet();   // since the last refresh
+
+    public TenantPoolWarmer(TenantDataSourceManager    dsm,
+                            TenantRegistry             registry,
+                            MultitenancyPoolProperties props,
+                            MeterRegistry              meters) {
+        this.dsm      = dsm;
+        this.registry = registry;
+        this.props    = props;
+
+        this.warmupTimer = Timer.builder("tenant.pool.warmup")
+                .description("Background build time of a tenant pool (Hikari + migrations)")
+                .register(meters);
+        Gauge.builder("tenant.pool.warm.set.size", this, w -> w.warmSet.size())
+                .description("Tenants whose pools are kept warm")
+                .register(meters);
+
+        dsm.addEvictionListener(this::evicted);
+    }
+
+    /* ───────────── lifecycle ───────────── */
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        warmSet = initialWarmSet();
+        log.info("Warming {} tenant pools in the background", warmSet.size());
+        warm(warmSet);
+
+        long every = props.getWarmSetRefresh().toMillis();
+        scheduler.scheduleWithFixedDelay(this::refresh, every, every, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+        if (props.getWarmSetFile() != null && !props.getWarmSetFile().isBlank()) {
+            try {
+                Files.write(Path.of(props.getWarmSetFile()), dsm.hottest(props.getWarmSetSize()));
+            } catch (IOException ex) {
+                log.warn("Could not persist warm set to {}: {}", props.getWarmSetFile(), ex.getMessage());
+            }
+        }
+    }
+
+    /* ───────────── helpers ───────────── */
+
+    /* retired (EXPLICIT) or replaced pools are rebuilt on their next use – nothing to do */
+    private void evicted(String tenant, RemovalCause cause) {
+        if (!warmSet.contains(tenant)) return;
+        if (cause == RemovalCause.SIZE && rewarmed.add(tenant)) {
+            log.debug("Re-warming evicted tenant {}", tenant);
+            warm(Set.of(tenant));
+        } else if (cause == RemovalCause.SIZE || cause == RemovalCause.EXPIRED) {
+            log.debug("Tenant {} went cold (cause: {}) – leaving the warm set", tenant, cause);
+            cool(tenant);
+        }
+    }
+
+    private synchronized void cool(String tenant) {
+        Set<String> next = new LinkedHashSet<>(warmSet);
+        next.remove(tenant);
+        warmSet = Set.copyOf(next);
+    }
+
+    private void refresh() {
+        rewarmed.clear();
+        try {
+            Set<String> hot = dsm.hottest(props.getWarmSetSize());
+            if (!hot.isEmpty()) {
+                synchronized (this) { warmSet = Set.copyOf(hot); }
+            }
+        } catch (Exception ex) {
+            log.warn("Warm-set refresh failed: {}", ex.getMessage());
+        }
+    }
+
+    private void warm(Collection<String> tenants) {
+        for (String tenant : tenants) {
+            if (dsm.isCached(tenant)) continue;
+            long start = System.nanoTime();
+            dsm.prefetch(tenant).whenComplete((ds, ex) -> {
+                if (ex != null) {
+                    log.warn("Warm-up of tenant {} failed: {}", tenant, ex.getMessage());
+                } else {
+                    warmupTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+            });
+        }
+    }
+
+    private Set<String> initialWarmSet() {
+        Set<String> ids = new LinkedHashSet<>();
+        String file = props.getWarmSetFile();
+        if (file != null && !file.isBlank() && Files.isReadable(Path.of(file))) {
+            try {
+                Files.readAllLines(Path.of(file)).stream()
+                        .map(String::trim)
+                        .filter(registry.getTenantMap()::containsKey)
+                        .forEach(ids::add);
+            } catch (IOException ex) {
+                log.warn("Could not read warm set from {}: {}", file, ex.getMessage());
+            }
+        }
+        registry.getTenantMap().keySet().stream()
+                .limit(props.getWarmSetSize())
+                .forEach(id -> { if (ids.size() < props.getWarmSetSize()) ids.add(id); });
+        return Set.copyOf(ids);
+    }
+}
@@ -3,33 +3,50 @@ package org.zakariafarih.multitenancyrouting;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
 import jakarta.persistence.EntityManagerFactory;
-import lombok.RequiredArgsConstructor;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
 import org.springframework.data.repository.core.support.RepositoryFactorySupport;
 import org.springframework.orm.jpa.SharedEntityManagerCreator;
 
 import javax.sql.DataSource;
-import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Builds Spring-Data repository proxies bound to a specific
  *   (tenantId, schema) at runtime.
  *
  * Cached per (tenant | schema) pair – **not** per EntityManager – so every
- * transaction still gets its own thread-safe proxy.
+ * transaction still gets its own thread-safe proxy. Proxies are built once
+ * per repository interface and dropped together with the tenant's pool.
+ * Their EMFs borrow connections through {@link TenantCheckout}.
  */
-@RequiredArgsConstructor
 public class TenantRepositoryFactory {
 
     private final TenantDataSourceManager     dsManager;
     private final EntityManagerFactoryManager emfManager;
+    private final TenantCheckout              checkout;
 
-    private final LoadingCache<String, RepositoryFactorySupport> cache =
-            Caffeine.newBuilder()
-                    .maximumSize(1_000)
-                    .expireAfterAccess(Duration.ofHours(4))
-                    .build(this::newFactory);
+    private record Repositories(DataSource pool, RepositoryFactorySupport factory, Map<Class<?>, Object> proxies) {}
+
+    /* unbounded – invalidated when the tenant's pool is evicted */
+    private final LoadingCache<String, Repositories> cache =
+            Caffeine.newBuilder().build(this::newFactory);
+
+    public TenantRepositoryFactory(TenantDataSourceManager     dsManager,
+                                   EntityManagerFactoryManager emfManager) {
+        this(dsManager, emfManager, new TenantCheckout(dsManager, null, null));
+    }
+
+    public TenantRepositoryFactory(TenantDataSourceManager     dsManager,
+                                   EntityManagerFactoryManager emfManager,
+                                   TenantCheckout              checkout) {
+        this.dsManager  = dsManager;
+        this.emfManager = emfManager;
+        this.checkout   = checkout;
+        dsManager.addEvictionListener((tenant, cause) ->
+                cache.asMap().keySet().removeIf(key -> key.startsWith(tenant + '|')));
+    }
 
     @SuppressWarnings("unchecked")
     public <T, ID, R extends JpaRepository<T, ID>> R getRepository(
@@ -38,21 +55,25 @@ public class TenantRepositoryFactory {
             String schema) {
 
         String key = tenantId + '|' + schema;
-        RepositoryFactorySupport factory = cache.get(key);
-        return factory.getRepository(repoInterface);
+        Repositories repos = cache.get(key);
+        if (!dsManager.isCurrent(tenantId, repos.pool()) && cache.asMap().remove(key, repos)) {
+            repos = cache.get(key);             // built while its pool was being evicted
+        }
+        return (R) repos.proxies().computeIfAbsent(repoInterface, repos.factory()::getRepository);
     }
 
     /* ---------- helpers ---------- */
 
-    private RepositoryFactorySupport newFactory(String key) {
+    private Repositories newFactory(String key) {
         String[] split   = key.split("\\|");
         String   tenant  = split[0];
         String   schema  = split[1];
 
-        DataSource            ds  = dsManager.get(tenant);
-        EntityManagerFactory  emf = emfManager.get(ds, tenant, schema);
+        DataSource            pool = dsManager.get(tenant);
+        DataSource            ds   = checkout.guard(tenant, pool);
+        EntityManagerFactory  emf  = emfManager.get(ds, tenant, schema);
 
-        return new JpaRepositoryFactory(
-                SharedEntityManagerCreator.createSharedEntityManager(emf));
+        return new Repositories(pool, new JpaRepositoryFactory(
+                SharedEntityManagerCreator.createSharedEntityManager(emf)), new ConcurrentHashMap<>());
     }
 }
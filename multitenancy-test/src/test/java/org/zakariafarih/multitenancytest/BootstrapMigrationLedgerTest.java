@@ -0,0 +1,122 @@
+package org.zakariafarih.multitenancytest;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.zakariafarih.multitenancycore.*;
+import org.zakariafarih.multitenancyrouting.TenantDataSourceManager;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * The bootstrapper migrates a throw-away pool (its DataSource lookup is not
+ * available in the autoconfiguration); the {@link MigrationLedger} must only
+ * let the tenant's real pool skip Flyway when both point at the same target.
+ */
+class BootstrapMigrationLedgerTest {
+
+    private static final String[] SCHEMAS = { "audit" };     // unqualified migration
+
+    private final SchemaGenerator  schemaGen = new SchemaGenerator(new MultitenancyFlywayProperties());
+    private final HikariDataSource admin     = adminDataSource();
+
+    private TenantDataSourceManager dsm;
+
+    @AfterEach
+    void tearDown() {
+        if (dsm != null) dsm.destroy();
+        admin.close();
+    }
+
+    @Test
+    void sharedHostSchemaIsMigratedAfterBootstrap() throws SQLException {
+        var cfg = tenant("ledger_shared");
+        var registry = bootstrap(cfg);
+
+        var pool = new MultitenancyPoolProperties();
+        pool.setMode(MultitenancyPoolProperties.PoolMode.SHARED_HOST);
+        pool.setSharedDatabase("ledger_host");
+        dsm = dsm(registry, pool);
+
+        assertEquals(0, countRows(cfg.getId(), "tenant_audit_log"), "tenant schema has no audit table");
+    }
+
+    @Test
+    void ownDatabaseMigratedByBootstrapSkipsFlyway() throws SQLException {
+        var cfg = tenant("ledger_own");
+        var registry = bootstrap(cfg);
+        String target = MigrationLedger.target(cfg.jdbcUrl(cfg.databaseName()), cfg.poolUser(), "audit");
+        assertTrue(schemaGen.getLedger().isCurrent(cfg.getId(), "audit", target),
+                "bootstrap pool and tenant pool share a database");
+
+        dsm = dsm(registry, new MultitenancyPoolProperties());
+        assertEquals(0, countRows(cfg.getId(), "\"audit\".tenant_audit_log"));
+    }
+
+    @Test
+    void migrationOfAnotherTargetIsNotCurrent() {
+        var cfg = tenant("ledger_other");
+        bootstrap(cfg);
+
+        String postgres = MigrationLedger.target("jdbc:postgresql://db:5432/ledger_other", "app", "audit");
+        assertFalse(schemaGen.getLedger().isCurrent(cfg.getId(), "audit", postgres));
+    }
+
+    /* ——— helpers ——— */
+
+    private MapTenantRegistry bootstrap(TenantProperties.TenantConfig cfg) {
+        var registry = new MapTenantRegistry();
+        registry.register(cfg);
+
+        var bootstrapper = new TenantBootstrapper(
+                registry,
+                new TenantDatabaseCreator(admin, "sa", "", new MultitenancyPoolProperties()),
+                tenantId -> { throw new UnsupportedOperationException("DS lookup not available in autoconfig"); },
+                schemaGen,
+                SCHEMAS,
+                mock(TenantAuditLogger.class),
+                new MultitenancyBootstrapProperties(),
+                new SimpleMeterRegistry());
+        try {
+            bootstrapper.afterSingletonsInstantiated();        // BLOCKING: returns once migrated
+        } finally {
+            bootstrapper.destroy();
+        }
+        return registry;
+    }
+
+    private TenantDataSourceManager dsm(TenantRegistry registry, MultitenancyPoolProperties pool) {
+        var props = new MultitenancyProps();
+        props.setSchemas(SCHEMAS);
+        return new TenantDataSourceManager(registry, pool, props, new MultitenancyMonitoringProperties(), schemaGen);
+    }
+
+    private int countRows(String tenantId, String table) throws SQLException {
+        try (Connection c = dsm.get(tenantId).getConnection();
+             Statement  s = c.createStatement();
+             ResultSet  r = s.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            r.next();
+            return r.getInt(1);
+        }
+    }
+
+    private static TenantProperties.TenantConfig tenant(String id) {
+        var cfg = new TenantProperties.TenantConfig();
+        cfg.setId(id);
+        return cfg;
+    }
+
+    private static HikariDataSource adminDataSource() {
+        var ds = new HikariDataSource();
+        ds.setJdbcUrl("jdbc:h2:mem:ledger_admin;DB_CLOSE_DELAY=-1");
+        ds.setUsername("sa");
+        return ds;
+    }
+}
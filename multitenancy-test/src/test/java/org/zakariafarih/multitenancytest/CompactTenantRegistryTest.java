@@ -0,0 +1,114 @@
+package org.zakariafarih.multitenancytest;
+
+import org.junit.jupiter.api.Test;
+import org.zakariafarih.multitenancycore.CompactTenantRegistry;
+import org.zakariafarih.multitenancycore.MapTenantRegistry;
+import org.zakariafarih.multitenancycore.TenantProperties;
+import org.zakariafarih.multitenancycore.UnknownTenantException;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Single registrations and removals on the compact registry go to an overlay
+ * that is folded into the columns later; every read must see them at once and
+ * agree with the map-backed registry.
+ */
+class CompactTenantRegistryTest {
+
+    @Test
+    void registrationsAndRemovalsAreVisibleBeforeAndAfterFolding() {
+        List<TenantProperties.TenantConfig> initial = new ArrayList<>();
+        for (int i = 0; i < 100; i++) initial.add(tenant("base_" + i, i));
+        var compact = new CompactTenantRegistry(initial);
+        var map = new MapTenantRegistry(initial);
+
+        for (int i = 0; i < 300; i++) {                        // crosses the fold threshold several times
+            var cfg = tenant("late_" + i, i);
+            assertTrue(compact.register(cfg));
+            map.register(cfg);
+            if (i % 3 == 0) {
+                String gone = i % 2 == 0 ? "base_" + (i / 3) : "late_" + (i - 3);
+                assertEquals(map.unregister(gone) != null, compact.unregister(gone) != null, gone);
+            }
+            assertSameTenants(map, compact);
+        }
+        assertFalse(compact.register(tenant("late_1", 0)), "duplicate id");
+    }
+
+    @Test
+    void removedIdCanBeRegisteredAgain() {
+        var compact = new CompactTenantRegistry(List.of(tenant("again", 1)));
+        assertEquals(1, compact.unregister("again").getMaxPool());
+        assertFalse(compact.contains("again"));
+        assertThrows(UnknownTenantException.class, () -> compact.maxPool("again"));
+
+        assertTrue(compact.register(tenant("again", 7)));
+        assertEquals(7, compact.maxPool("again"));
+        assertEquals(7, compact.get("again").getMaxPool());
+        assertEquals("again", compact.canonicalId("/again/".subSequence(0, 7), 1, 6));
+    }
+
+    @Test
+    void descriptorsHandedOutAreCopies() {
+        var compact = new CompactTenantRegistry(List.of());
+        var cfg = tenant("copied", 3);
+        compact.register(cfg);
+        cfg.setMaxPool(99);
+        compact.get("copied").setMaxPool(42);
+        assertEquals(3, compact.maxPool("copied"));
+    }
+
+    @Test
+    void entrySetIteratesTheSnapshotItWasTakenFrom() {
+        var compact = new CompactTenantRegistry(List.of(tenant("kept", 1), tenant("dropped", 2)));
+        var entries = compact.getTenantMap().entrySet();
+        compact.register(tenant("later", 3));
+        compact.unregister("dropped");
+
+        List<String> ids = new ArrayList<>();
+        for (var e : entries) {
+            assertNotNull(e.getValue(), e.getKey());
+            assertEquals(e.getKey(), e.getValue().getId());
+            ids.add(e.getKey());
+        }
+        assertEquals(List.of("kept", "dropped"), ids);
+        assertEquals(entries.size(), ids.size());
+    }
+
+    @Test
+    void overlayIdsResolveFromARegion() {
+        var compact = new CompactTenantRegistry(List.of(tenant("base", 1)));
+        for (int i = 0; i < 50; i++) compact.register(tenant("overlay_" + i, i));
+        String uri = "/t/overlay_42/patients";
+        assertEquals("overlay_42", compact.canonicalId(uri, 3, 13));
+        assertNull(compact.canonicalId(uri, 3, 11), "prefix of an overlay id");
+        assertNull(compact.canonicalId("/t/overlay_99/", 3, 13));
+    }
+
+    /* ——— helpers ——— */
+
+    private static void assertSameTenants(MapTenantRegistry expected, CompactTenantRegistry actual) {
+        assertEquals(expected.getTenantMap().size(), actual.getTenantMap().size());
+        Set<String> ids = new HashSet<>(actual.getTenantMap().keySet());
+        assertEquals(expected.getTenantMap().keySet(), ids);
+        for (String id : ids) {
+            assertTrue(actual.contains(id));
+            assertEquals(expected.get(id).getMaxPool(), actual.maxPool(id));
+            assertEquals(expected.get(id).hostKey(), actual.hostKey(id));
+            assertSame(actual.canonicalId(id), actual.canonicalId(new StringBuilder(id), 0, id.length()));
+        }
+    }
+
+    private static TenantProperties.TenantConfig tenant(String id, int maxPool) {
+        var cfg = new TenantProperties.TenantConfig();
+        cfg.setId(id);
+        cfg.setMaxPool(maxPool);
+        cfg.setHost(maxPool % 2 == 0 ? null : "db" + (maxPool % 5));
+        return cfg;
+    }
+}
@@ -0,0 +1,80 @@
+package org.zakariafarih.multitenancytest;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.*;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.util.StopWatch;
+import org.zakariafarih.cliniccore.Patient;
+import org.zakariafarih.multitenancycore.PersistenceUnitScanCache;
+
+import java.util.function.Consumer;
+
+/**
+ * Before / after timing of the EMF cold path: classpath package scan on every
+ * build vs. managed types scanned once by {@link PersistenceUnitScanCache}.
+ */
+@Slf4j
+class PersistenceUnitScanTimingTest {
+
+    private static final int      BUILDS   = 20;
+    private static final String[] PACKAGES = { "org.zakariafarih.cliniccore" };
+
+    private HikariDataSource ds;
+
+    @BeforeEach
+    void setUp() {
+        HikariConfig hc = new HikariConfig();
+        hc.setJdbcUrl("jdbc:h2:mem:scan_timing;MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+        hc.setUsername("sa");
+        hc.setPassword("");
+        ds = new HikariDataSource(hc);
+    }
+
+    @AfterEach
+    void tearDown() { ds.close(); }
+
+    @Test
+    void cachedScanSkipsClasspathScanning() {
+        PersistenceUnitScanCache scanCache = new PersistenceUnitScanCache();
+
+        /* warm-up JIT / Hibernate bootstrap once so both runs start equal */
+        build(fb -> fb.setPackagesToScan(PACKAGES)).close();
+
+        StopWatch sw = new StopWatch("emf-cold-path x" + BUILDS);
+        sw.start("packagesToScan (before)");
+        for (int i = 0; i < BUILDS; i++) {
+            build(fb -> fb.setPackagesToScan(PACKAGES)).close();
+        }
+        sw.stop();
+
+        sw.start("PersistenceUnitScanCache (after)");
+        for (int i = 0; i < BUILDS; i++) {
+            EntityManagerFactory emf = build(fb -> fb.setManagedTypes(scanCache.get(PACKAGES)));
+            Assertions.assertNotNull(emf.getMetamodel().entity(Patient.class), "entity not mapped");
+            emf.close();
+        }
+        sw.stop();
+
+        log.info(sw.prettyPrint());
+
+        Assertions.assertSame(scanCache.get(PACKAGES), scanCache.get(PACKAGES),
+                "packages must be scanned only once");
+        Assertions.assertTrue(
+                scanCache.get(PACKAGES).getManagedClassNames().contains(Patient.class.getName()),
+                "Patient missing from scanned types");
+    }
+
+    private EntityManagerFactory build(Consumer<LocalContainerEntityManagerFactoryBean> units) {
+        var fb = new LocalContainerEntityManagerFactoryBean();
+        fb.setDataSource(ds);
+        units.accept(fb);
+        fb.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        fb.getJpaPropertyMap().put("hibernate.default_schema", "clinic");
+        fb.afterPropertiesSet();
+        return fb.getObject();
+    }
+}
@@ -0,0 +1,131 @@
+package org.zakariafarih.multitenancytest;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.zakariafarih.multitenancycore.*;
+import org.zakariafarih.multitenancyrouting.HostConnectionBudget;
+import org.zakariafarih.multitenancyrouting.TenantDataSourceManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A retired pool keeps its host-budget reservation until it has drained, and
+ * its release never takes the reservation of the tenant's rebuilt pool – nor
+ * the host route of a joined SHARED_HOST tenant. A drain still running at
+ * shutdown is cut short, not abandoned.
+ */
+class PoolRetirementBudgetTest {
+
+    private static final String TENANT = "retire_budget";
+
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+
+    private TenantDataSourceManager dsm;
+
+    @BeforeEach
+    void setUp() {
+        var registry = new MapTenantRegistry();
+        var cfg = new TenantProperties.TenantConfig();
+        cfg.setId(TENANT);
+        registry.register(cfg);
+
+        var pool = new MultitenancyPoolProperties();
+        pool.setDefaultMaxPoolSize(2);
+        pool.setHostConnectionBudget(10);
+        var props = new MultitenancyProps();
+        props.setSchemas(new String[]{ "audit" });
+
+        dsm = new TenantDataSourceManager(registry, pool, props, new MultitenancyMonitoringProperties(),
+                new SchemaGenerator(new MultitenancyFlywayProperties()),
+                new HostConnectionBudget(pool, meters), meters);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dsm.destroy();
+    }
+
+    @Test
+    void reservationIsReturnedOnlyAfterTheDrain() throws Exception {
+        HikariDataSource old = (HikariDataSource) dsm.get(TENANT);
+        assertEquals(2, reserved());
+
+        try (Connection busy = old.getConnection()) {
+            assertTrue(dsm.retire(TENANT));
+            Thread.sleep(200);
+            assertFalse(old.isClosed(), "still draining");
+            assertEquals(2, reserved(), "draining pool keeps its reservation");
+        }
+        awaitClosed(old);
+        assertEquals(0, reserved());
+    }
+
+    @Test
+    void drainOfTheOldPoolLeavesTheRebuiltPoolReserved() throws Exception {
+        HikariDataSource old = (HikariDataSource) dsm.get(TENANT);
+
+        try (Connection busy = old.getConnection()) {
+            assertTrue(dsm.retire(TENANT));
+            DataSource rebuilt = dsm.get(TENANT);
+            assertNotSame(old, rebuilt);
+            assertEquals(2, reserved());
+        }
+        awaitClosed(old);
+        assertEquals(2, reserved(), "rebuilt pool's reservation survives the old pool's drain");
+        assertTrue(dsm.isCached(TENANT));
+    }
+
+    @Test
+    void shutdownClosesPoolsThatAreStillDraining() throws Exception {
+        AtomicBoolean postDrain = new AtomicBoolean();
+        dsm.addDrainListener(tenant -> () -> postDrain.set(true));
+        HikariDataSource old = (HikariDataSource) dsm.get(TENANT);
+
+        try (Connection busy = old.getConnection()) {
+            assertTrue(dsm.retire(TENANT));
+            Thread.sleep(200);
+            assertFalse(old.isClosed(), "still draining");
+
+            dsm.destroy();
+            assertTrue(old.isClosed(), "closed by destroy, not left to a rejected poll");
+            assertTrue(postDrain.get(), "post-drain tasks (EMF close) ran");
+            assertEquals(0, reserved());
+        }
+    }
+
+    @Test
+    void drainAfterAJoinKeepsTheTenantOnTheHostBudget() throws Exception {
+        var pool = new MultitenancyPoolProperties();
+        pool.setHostConnectionBudget(10);
+        var hostMeters = new SimpleMeterRegistry();
+        var budget = new HostConnectionBudget(pool, hostMeters);
+        DataSource shared = new DriverManagerDataSource("jdbc:h2:mem:retire_joined;DB_CLOSE_DELAY=-1", "sa", "");
+
+        budget.join(TENANT, "db:5432");                     // the rebuilt SHARED_HOST wrapper
+        budget.release(TENANT, shared);                      // late drain of the old one
+        try (Connection c = budget.getConnection(TENANT, shared::getConnection)) {
+            assertEquals(0.1, hostMeters.get("tenant.host.budget.saturation").tag("host", "db:5432")
+                    .gauge().value(), 1e-9, "checkout still takes a host permit");
+        }
+    }
+
+    /* ——— helpers ——— */
+
+    private double reserved() {
+        return meters.get("tenant.host.budget.reserved").tag("host", "h2").gauge().value();
+    }
+
+    private static void awaitClosed(HikariDataSource ds) throws InterruptedException {
+        for (int i = 0; i < 100 && !ds.isClosed(); i++) Thread.sleep(50);
+        Thread.sleep(50);                                   // release follows close on the retire thread
+        assertTrue(ds.isClosed());
+    }
+}
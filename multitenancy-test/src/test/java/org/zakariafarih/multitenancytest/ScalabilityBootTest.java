@@ -16,7 +16,9 @@ import org.zakariafarih.multitenancyrouting.TenantDataSourceManager;
 @SpringBootTest(
         classes = ClinicCoreApplication.class,
         properties = {           // override default tenant list with the big one
-                "spring.config.import=classpath:tenants-big.yml"
+                "spring.config.import=classpath:tenants-big.yml",
+                // migrate one H2 template, replay it into the 200 tenant databases
+                "multitenancy.provisioning.mode=template"
         }
 )
 @ActiveProfiles("test")
@@ -0,0 +1,214 @@
+package org.zakariafarih.multitenancytest;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.zakariafarih.multitenancycore.*;
+import org.zakariafarih.multitenancyrouting.HostConnectionBudget;
+import org.zakariafarih.multitenancyrouting.SchemaSwitchingDataSource;
+import org.zakariafarih.multitenancyrouting.TenantCheckout;
+import org.zakariafarih.multitenancyrouting.TenantDataSourceManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * {@code SHARED_HOST} routing: tenants on one database share a single pool
+ * and must only ever see their own schema. The pool holds two connections
+ * (Flyway needs both); Hikari hands a thread its last-used connection first,
+ * so sequential checkouts keep reusing the previous tenant's connection.
+ * The tenants are bootstrapped first, as at application start, so the
+ * migration ledger already holds the bootstrap pools' entries.
+ */
+class SharedHostSchemaIsolationTest {
+
+    private static final String[] TENANTS = { "shared_a", "shared_b", "shared_c" };
+    private static final int      ROUNDS  = 500;
+
+    private final SchemaGenerator  schemaGen = new SchemaGenerator(new MultitenancyFlywayProperties());
+    private final MapTenantRegistry registry = new MapTenantRegistry();
+
+    private TenantDataSourceManager dsm;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        for (String id : TENANTS) {
+            var cfg = new TenantProperties.TenantConfig();
+            cfg.setId(id);
+            registry.register(cfg);
+        }
+        bootstrap();
+        dsm = dsm(sharedHost("shared_isolation"), "audit", null);      // unqualified migration
+
+        for (String id : TENANTS) {
+            try (Connection c = dsm.get(id).getConnection();
+                 Statement  s = c.createStatement()) {
+                s.executeUpdate("DELETE FROM tenant_audit_log");
+                s.executeUpdate("INSERT INTO tenant_audit_log (tenant_id, event_type, status) "
+                        + "VALUES ('" + id + "', 'CREATE', 'OK')");
+            }
+        }
+    }
+
+    @AfterEach
+    void tearDown() { dsm.destroy(); }
+
+    @Test
+    void qualifiedMigrationIsRefused() throws SQLException {
+        try (var host = h2("shared_qualified");
+             Connection c = host.getConnection();
+             Statement  s = c.createStatement()) {
+            s.execute("CREATE SCHEMA IF NOT EXISTS clinic");       // lets CREATE TABLE clinic.patient succeed
+        }
+        var qualified = dsm(sharedHost("shared_qualified"), "clinic", null);
+        try {
+            Throwable ex = assertThrows(RuntimeException.class, () -> qualified.get(TENANTS[0]));
+            while (!(ex instanceof IllegalStateException) && ex.getCause() != null) ex = ex.getCause();
+            assertTrue(ex.getMessage().contains("unqualified"), ex.getMessage());
+        } finally {
+            qualified.destroy();
+        }
+    }
+
+    @Test
+    void sharedPoolIsReservedFromTheHostBudget() throws SQLException {
+        var pool = sharedHost("shared_budget");
+        pool.setHostConnectionBudget(2);
+        pool.setConnectionGateTimeout(Duration.ofMillis(200));
+        var budget = new HostConnectionBudget(pool, new SimpleMeterRegistry());
+        var budgeted = dsm(pool, "audit", budget);
+        try {
+            var checkout = new TenantCheckout(budgeted, null, budget);
+            DataSource a = checkout.guard(TENANTS[0], budgeted.get(TENANTS[0]));
+            DataSource b = checkout.guard(TENANTS[1], budgeted.get(TENANTS[1]));
+
+            try (Connection c1 = a.getConnection(); Connection c2 = a.getConnection()) {
+                var ex = assertThrows(SQLTransientConnectionException.class, b::getConnection);
+                assertTrue(ex.getMessage().contains("budget"), ex.getMessage());
+            }
+            try (Connection c = b.getConnection()) {
+                assertEquals(TENANTS[1], c.getSchema());
+            }
+        } finally {
+            budgeted.destroy();
+        }
+    }
+
+    @Test
+    void tenantsShareOnePhysicalPool() {
+        DataSource first = shared(dsm.get(TENANTS[0]));
+        for (String id : TENANTS) assertSame(first, shared(dsm.get(id)));
+    }
+
+    @Test
+    void interleavedCheckoutsNeverSeeAnotherTenantsSchema() throws SQLException {
+        for (int i = 0; i < ROUNDS; i++) {
+            assertOwnSchema(TENANTS[ThreadLocalRandom.current().nextInt(TENANTS.length)]);
+        }
+    }
+
+    @Test
+    void concurrentCheckoutsNeverSeeAnotherTenantsSchema() throws Exception {
+        ExecutorService workers = Executors.newFixedThreadPool(TENANTS.length * 2);
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int t = 0; t < TENANTS.length * 2; t++) {
+                String id = TENANTS[t % TENANTS.length];
+                tasks.add(() -> {
+                    for (int i = 0; i < ROUNDS / 5; i++) assertOwnSchema(id);
+                    return null;
+                });
+            }
+            for (Future<Void> f : workers.invokeAll(tasks)) f.get();
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    @Test
+    void returnedConnectionIsResetToTheNeutralSchema() throws SQLException {
+        assertOwnSchema(TENANTS[1]);
+
+        try (Connection raw = shared(dsm.get(TENANTS[1])).getConnection();
+             Statement  s   = raw.createStatement()) {
+            assertEquals("PUBLIC", raw.getSchema());
+            assertThrows(SQLException.class, () -> s.executeQuery("SELECT tenant_id FROM tenant_audit_log"));
+        }
+    }
+
+    /* ——— helpers ——— */
+
+    private void bootstrap() {
+        try (var admin = h2("shared_admin")) {
+            var bootstrapper = new TenantBootstrapper(
+                    registry,
+                    new TenantDatabaseCreator(admin, "sa", "", new MultitenancyPoolProperties()),
+                    tenantId -> { throw new UnsupportedOperationException("DS lookup not available in autoconfig"); },
+                    schemaGen,
+                    new String[]{ "audit" },
+                    mock(TenantAuditLogger.class),
+                    new MultitenancyBootstrapProperties(),
+                    new SimpleMeterRegistry());
+            try {
+                bootstrapper.afterSingletonsInstantiated();
+            } finally {
+                bootstrapper.destroy();
+            }
+        }
+    }
+
+    private TenantDataSourceManager dsm(MultitenancyPoolProperties pool, String schema, HostConnectionBudget budget) {
+        var props = new MultitenancyProps();
+        props.setSchemas(new String[]{ schema });
+        return new TenantDataSourceManager(registry, pool, props, new MultitenancyMonitoringProperties(),
+                schemaGen, budget, new SimpleMeterRegistry());
+    }
+
+    private static MultitenancyPoolProperties sharedHost(String database) {
+        var pool = new MultitenancyPoolProperties();
+        pool.setMode(MultitenancyPoolProperties.PoolMode.SHARED_HOST);
+        pool.setSharedDatabase(database);
+        pool.setDefaultMaxPoolSize(2);
+        return pool;
+    }
+
+    private static HikariDataSource h2(String database) {
+        var ds = new HikariDataSource();
+        ds.setJdbcUrl("jdbc:h2:mem:" + database + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+        ds.setUsername("sa");
+        return ds;
+    }
+
+    private void assertOwnSchema(String tenant) throws SQLException {
+        try (Connection c = dsm.get(tenant).getConnection();
+             Statement  s = c.createStatement();
+             ResultSet  r = s.executeQuery("SELECT tenant_id FROM tenant_audit_log")) {
+
+            assertEquals(tenant, c.getSchema());
+            assertTrue(r.next(), "no row visible to " + tenant);
+            assertEquals(tenant, r.getString(1));
+            assertFalse(r.next(), "foreign rows visible to " + tenant);
+        }
+    }
+
+    private static DataSource shared(DataSource tenantView) {
+        return ((SchemaSwitchingDataSource) tenantView).getTargetDataSource();
+    }
+}
@@ -0,0 +1,58 @@
+package org.zakariafarih.multitenancytest;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.zakariafarih.multitenancycore.*;
+import org.zakariafarih.multitenancyrouting.TenantDataSourceManager;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * An EMF whose build finished after its pool's eviction listeners ran stays
+ * cached over a closed pool unless {@link EMFProvider} notices that the pool
+ * is no longer the tenant's live one.
+ */
+class StaleEmfRebuildTest {
+
+    private static final String   TENANT   = "stale_emf";
+    private static final String[] PACKAGES = { "org.zakariafarih.cliniccore" };
+
+    private final EMFProvider emfs = new EMFProvider(new PersistenceUnitScanCache());
+
+    private TenantDataSourceManager dsm;
+
+    @AfterEach
+    void tearDown() {
+        emfs.destroy();
+        if (dsm != null) dsm.destroy();
+    }
+
+    @Test
+    void emfBuiltOverARetiredPoolIsRebuilt() {
+        var cfg = new TenantProperties.TenantConfig();
+        cfg.setId(TENANT);
+        var props = new MultitenancyProps();
+        props.setSchemas(new String[]{ "audit" });
+        dsm = new TenantDataSourceManager(new MapTenantRegistry(List.of(cfg)), new MultitenancyPoolProperties(),
+                props, new MultitenancyMonitoringProperties(), new SchemaGenerator(new MultitenancyFlywayProperties()));
+        emfs.setLivePool(dsm::isCurrent);
+
+        DataSource old = dsm.get(TENANT);
+        EntityManagerFactory stale = emfs.get(old, TENANT, "audit", PACKAGES);
+        assertTrue(dsm.retire(TENANT));              // no drain listener: as if the build had lost the race
+
+        DataSource rebuilt = dsm.get(TENANT);
+        assertFalse(dsm.isCurrent(TENANT, old));
+        assertTrue(dsm.isCurrent(TENANT, rebuilt));
+
+        EntityManagerFactory fresh = emfs.get(rebuilt, TENANT, "audit", PACKAGES);
+        assertNotSame(stale, fresh);
+        assertFalse(stale.isOpen(), "EMF over the retired pool is closed");
+        assertSame(fresh, emfs.get(rebuilt, TENANT, "audit", PACKAGES));
+        assertSame(fresh, emfs.get(old, TENANT, "audit", PACKAGES), "a late caller gets the live EMF");
+    }
+}
@@ -0,0 +1,110 @@
+package org.zakariafarih.multitenancytest;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.zakariafarih.multitenancycore.*;
+import org.zakariafarih.multitenancyrouting.TenantDataSourceManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TEMPLATE provisioning on in-memory H2: the template is migrated once, each
+ * new tenant database gets its SCRIPT export replayed and is marked current
+ * in the ledger, so the tenant's own pool never runs Flyway.
+ */
+class TemplateProvisioningTest {
+
+    private static final String[] SCHEMAS = { "audit" };
+
+    private final CountingSchemaGenerator schemaGen = new CountingSchemaGenerator();
+    private final HikariDataSource        admin     = adminDataSource();
+
+    private TenantDatabaseCreator   creator;
+    private TenantDataSourceManager dsm;
+
+    @AfterEach
+    void tearDown() {
+        if (dsm != null) dsm.destroy();
+        if (creator != null) creator.close();
+        admin.close();
+    }
+
+    @Test
+    void clonedTenantsAreMarkedCurrentAndSkipFlyway() throws SQLException {
+        var props = new MultitenancyProvisioningProperties();
+        props.setMode(MultitenancyProvisioningProperties.Mode.TEMPLATE);
+        props.setTemplatePrefix("tpl_test_");
+        creator = new TenantDatabaseCreator(admin, "sa", "", new MultitenancyPoolProperties(),
+                new SimpleMeterRegistry(), new TemplateDatabaseProvisioner("sa", "", schemaGen, props));
+
+        var first  = tenant("tpl_first");
+        var second = tenant("tpl_second");
+        creator.createDatabaseAndSchemaIfNotExists(first, SCHEMAS);
+        creator.createDatabaseAndSchemaIfNotExists(second, SCHEMAS);
+
+        assertEquals(1, schemaGen.runs.get(), "only the template itself is migrated");
+        for (var cfg : List.of(first, second)) {
+            String target = MigrationLedger.target(cfg.jdbcUrl(cfg.databaseName()), cfg.poolUser(), "audit");
+            assertTrue(schemaGen.getLedger().isCurrent(cfg.getId(), "audit", target), cfg.getId());
+        }
+
+        var app = new MultitenancyProps();
+        app.setSchemas(SCHEMAS);
+        dsm = new TenantDataSourceManager(new MapTenantRegistry(List.of(first, second)),
+                new MultitenancyPoolProperties(), app, new MultitenancyMonitoringProperties(), schemaGen);
+
+        DataSource ds = dsm.get(first.getId());
+        assertEquals(0, count(ds, "\"audit\".tenant_audit_log"), "replayed table is there");
+        assertTrue(count(ds, "\"audit\".\"flyway_schema_history\"") > 0, "with the template's history");
+        dsm.get(second.getId());
+        assertEquals(1, schemaGen.runs.get(), "tenant pools skipped Flyway");
+    }
+
+    /* ——— helpers ——— */
+
+    /** Counts real Flyway runs; ledger-skipped migrations never get here. */
+    private static final class CountingSchemaGenerator extends SchemaGenerator {
+        final AtomicInteger runs = new AtomicInteger();
+
+        CountingSchemaGenerator() { super(new MultitenancyFlywayProperties()); }
+
+        @Override
+        public void migrate(DataSource tenantDs, String schema, String targetSchema) {
+            runs.incrementAndGet();
+            super.migrate(tenantDs, schema, targetSchema);
+        }
+    }
+
+    private static int count(DataSource ds, String table) throws SQLException {
+        try (Connection c = ds.getConnection();
+             Statement  s = c.createStatement();
+             ResultSet  r = s.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            r.next();
+            return r.getInt(1);
+        }
+    }
+
+    private static TenantProperties.TenantConfig tenant(String id) {
+        var cfg = new TenantProperties.TenantConfig();
+        cfg.setId(id);
+        cfg.setDbName(id);
+        return cfg;
+    }
+
+    private static HikariDataSource adminDataSource() {
+        var ds = new HikariDataSource();
+        ds.setJdbcUrl("jdbc:h2:mem:tpl_admin;DB_CLOSE_DELAY=-1");
+        ds.setUsername("sa");
+        return ds;
+    }
+}
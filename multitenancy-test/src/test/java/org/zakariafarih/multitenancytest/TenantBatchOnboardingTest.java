@@ -0,0 +1,136 @@
+package org.zakariafarih.multitenancytest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.zakariafarih.multitenancycore.*;
+import org.zakariafarih.multitenancyrouting.TenantAdminController;
+import org.zakariafarih.multitenancyrouting.TenantBatchOnboarder;
+import org.zakariafarih.multitenancyrouting.TenantDataSourceManager;
+
+import javax.sql.DataSource;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * {@code POST /tenants/batch}: one NDJSON line per tenant – duplicates are
+ * reported without being touched, a tenant that fails to migrate is rolled
+ * back, the rest are onboarded.
+ */
+class TenantBatchOnboardingTest {
+
+    private static final String[] SCHEMAS = { "audit" };
+    private static final String   BROKEN  = "batch_broken";
+
+    private final ObjectMapper     mapper = new ObjectMapper();
+    private final HikariDataSource admin = adminDataSource();
+
+    private TenantDatabaseCreator   creator;
+    private TenantDataSourceManager dsm;
+    private TenantBatchOnboarder    onboarder;
+
+    @AfterEach
+    void tearDown() {
+        if (onboarder != null) onboarder.destroy();
+        if (dsm != null) dsm.destroy();
+        if (creator != null) creator.close();
+        admin.close();
+    }
+
+    @Test
+    void reportsEachTenantAndRollsBackFailures() throws Exception {
+        var existing = tenant("batch_existing");
+        var registry = new MapTenantRegistry(List.of(existing));
+        var schemaGen = new FailingSchemaGenerator();
+        var props = new MultitenancyProps();
+        props.setSchemas(SCHEMAS);
+        creator   = new TenantDatabaseCreator(admin, "sa", "", new MultitenancyPoolProperties());
+        dsm       = new TenantDataSourceManager(registry, new MultitenancyPoolProperties(), props,
+                new MultitenancyMonitoringProperties(), schemaGen);
+        onboarder = new TenantBatchOnboarder(registry, creator, dsm, schemaGen, props,
+                new MultitenancyBootstrapProperties());
+        MockMvc mvc = MockMvcBuilders.standaloneSetup(new TenantAdminController(
+                registry, null, dsm, creator, schemaGen, props, null, onboarder, mapper)).build();
+
+        var batch = List.of(tenant("batch_a"), tenant("batch_existing"), tenant(BROKEN),
+                tenant("batch_b"), tenant("batch_a"));
+        MvcResult res = mvc.perform(post("/tenants/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(batch)))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn();
+
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : res.getResponse().getContentAsString().split("\n")) {
+            lines.add(mapper.readTree(line));
+        }
+        assertEquals(batch.size(), lines.size(), "one line per tenant in the request");
+
+        Map<String, List<String>> byStatus = new TreeMap<>();
+        for (JsonNode o : lines) {
+            byStatus.computeIfAbsent(o.get("status").asText(), k -> new ArrayList<>()).add(o.get("tenant").asText());
+            assertEquals(!"CREATED".equals(o.get("status").asText()), o.has("error"), o.toString());
+        }
+        assertEquals(Set.of("batch_a", "batch_b"), Set.copyOf(byStatus.get("CREATED")));
+        assertEquals(List.of("batch_a", "batch_existing"), byStatus.get("DUPLICATE").stream().sorted().toList());
+        assertEquals(List.of(BROKEN), byStatus.get("FAILED"));
+
+        assertTrue(registry.contains("batch_a") && registry.contains("batch_b"));
+        assertEquals(existing, registry.get("batch_existing"), "a duplicate never replaces the registered tenant");
+        assertFalse(registry.contains(BROKEN), "failed tenant unregistered");
+        assertFalse(dsm.isCached(BROKEN), "and its pool retired");
+        assertTrue(schemaGen.getLedger().isCurrent("batch_a", "audit",
+                MigrationLedger.target(tenant("batch_a").jdbcUrl("batch_a"), "sa", "audit")));
+    }
+
+    @Test
+    void databasesAreNeverCreatedAcrossHosts() {
+        creator = new TenantDatabaseCreator(admin, "sa", "", new MultitenancyPoolProperties());
+        var east = tenant("batch_east");
+        east.setHost("pg-east");
+        var west = tenant("batch_west");
+        west.setHost("pg-west");
+
+        var ex = assertThrows(IllegalArgumentException.class,
+                () -> creator.createDatabases(List.of(east, west), SCHEMAS));
+        assertTrue(ex.getMessage().contains("pg-east:5432") && ex.getMessage().contains("pg-west:5432"));
+        assertTrue(creator.createDatabases(List.of(tenant("batch_mem")), SCHEMAS).isEmpty(), "H2 needs no step 1");
+    }
+
+    /* ——— helpers ——— */
+
+    /** Fails every migration of {@link #BROKEN}. */
+    private static final class FailingSchemaGenerator extends SchemaGenerator {
+        FailingSchemaGenerator() { super(new MultitenancyFlywayProperties()); }
+
+        @Override
+        public void migrate(String tenantId, DataSource tenantDs, String schema) {
+            if (BROKEN.equals(tenantId)) throw new IllegalStateException("migration of " + tenantId + " failed");
+            super.migrate(tenantId, tenantDs, schema);
+        }
+    }
+
+    private static TenantProperties.TenantConfig tenant(String id) {
+        var cfg = new TenantProperties.TenantConfig();
+        cfg.setId(id);
+        return cfg;
+    }
+
+    private static HikariDataSource adminDataSource() {
+        var ds = new HikariDataSource();
+        ds.setJdbcUrl("jdbc:h2:mem:batch_admin;DB_CLOSE_DELAY=-1");
+        ds.setUsername("sa");
+        return ds;
+    }
+}
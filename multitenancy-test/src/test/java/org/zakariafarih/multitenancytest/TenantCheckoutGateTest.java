@@ -0,0 +1,84 @@
+package org.zakariafarih.multitenancytest;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.zakariafarih.multitenancycore.*;
+import org.zakariafarih.multitenancyrouting.TenantCheckout;
+import org.zakariafarih.multitenancyrouting.TenantConnectionGate;
+import org.zakariafarih.multitenancyrouting.TenantDataSourceManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JPA borrows connections through {@link TenantCheckout#guard}; the gate
+ * behind it must follow the pool's size when it is changed at runtime.
+ */
+class TenantCheckoutGateTest {
+
+    private static final String TENANT = "gate_resize";
+
+    private TenantDataSourceManager dsm;
+    private TenantCheckout          checkout;
+
+    @BeforeEach
+    void setUp() {
+        var registry = new MapTenantRegistry();
+        var cfg = new TenantProperties.TenantConfig();
+        cfg.setId(TENANT);
+        registry.register(cfg);
+
+        var pool = new MultitenancyPoolProperties();
+        pool.setDefaultMaxPoolSize(2);
+        var props = new MultitenancyProps();
+        props.setSchemas(new String[]{ "audit" });
+
+        dsm = new TenantDataSourceManager(registry, pool, props, new MultitenancyMonitoringProperties(),
+                new SchemaGenerator(new MultitenancyFlywayProperties()));
+        var gate = new TenantConnectionGate(dsm, 2, Duration.ofMillis(200), new SimpleMeterRegistry());
+        checkout = new TenantCheckout(dsm, gate, null);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dsm.destroy();
+    }
+
+    @Test
+    void guardedDataSourceIsGated() throws Exception {
+        DataSource guarded = checkout.guard(TENANT, dsm.get(TENANT));
+        assertSame(guarded, checkout.guard(TENANT, dsm.get(TENANT)), "one view per pool");
+
+        try (Connection a = guarded.getConnection(); Connection b = guarded.getConnection()) {
+            assertThrows(SQLTransientConnectionException.class, guarded::getConnection);
+        }
+        try (Connection c = guarded.getConnection()) {
+            assertTrue(c.isValid(1), "permit returned on close");
+        }
+    }
+
+    @Test
+    void gateFollowsPoolResize() throws Exception {
+        HikariDataSource pool = (HikariDataSource) dsm.get(TENANT);
+        DataSource guarded = checkout.guard(TENANT, pool);
+
+        try (Connection a = guarded.getConnection(); Connection b = guarded.getConnection()) {
+            pool.getHikariConfigMXBean().setMaximumPoolSize(3);
+            try (Connection c = guarded.getConnection()) {
+                assertTrue(c.isValid(1));
+            }
+        }
+
+        pool.getHikariConfigMXBean().setMaximumPoolSize(1);
+        try (Connection a = guarded.getConnection()) {
+            assertThrows(SQLTransientConnectionException.class, guarded::getConnection);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package org.zakariafarih.multitenancytest;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.zakariafarih.multitenancycore.TenantContext;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Scoped binding restores whatever was bound before – on close, on
+ * exceptions and when nested – and the propagation helpers run tasks under
+ * the submitter's tenant without leaking it into the worker thread.
+ * Runs twice: with the thread-local carrier and, in the
+ * {@code scoped-tenant-context} execution, with ScopedValue.
+ */
+class TenantContextScopeTest {
+
+    @AfterEach
+    void tearDown() { TenantContext.clear(); }
+
+    @Test
+    void closingAScopeRestoresThePreviousTenant() {
+        TenantContext.set("outer");
+        try (TenantContext.Scope ignored = TenantContext.open("inner")) {
+            assertEquals("inner", TenantContext.get());
+        }
+        assertEquals("outer", TenantContext.get());
+    }
+
+    @Test
+    void closingAScopeOnAnUnboundThreadLeavesItUnbound() {
+        try (TenantContext.Scope ignored = TenantContext.open("inner")) {
+            assertEquals("inner", TenantContext.get());
+        }
+        assertNull(TenantContext.get());
+    }
+
+    @Test
+    void nestedScopesUnwindInOrder() throws Exception {
+        TenantContext.runWith("a", () -> {
+            TenantContext.runWith("b", () -> {
+                try (TenantContext.Scope ignored = TenantContext.open(null)) {
+                    assertNull(TenantContext.get());
+                }
+                assertEquals("b", TenantContext.get());
+            });
+            assertEquals("a", TenantContext.get());
+        });
+        assertNull(TenantContext.get());
+
+        assertEquals("c", TenantContext.callWith("c", TenantContext::getRequired));
+        assertNull(TenantContext.get());
+    }
+
+    @Test
+    void scopeIsRestoredWhenTheTaskThrows() {
+        TenantContext.set("outer");
+        assertThrows(IllegalStateException.class, () -> TenantContext.runWith("inner", () -> {
+            throw new IllegalStateException("boom");
+        }));
+        assertEquals("outer", TenantContext.get());
+    }
+
+    @Test
+    void wrappedTasksRunUnderTheSubmittersTenant() throws Exception {
+        ExecutorService worker = Executors.newSingleThreadExecutor();
+        try {
+            worker.submit(() -> TenantContext.set("stale")).get();    // the worker's own binding
+
+            TenantContext.set("submitter");
+            Runnable         runnable = TenantContext.wrap(() -> assertEquals("submitter", TenantContext.get()));
+            Callable<String> callable = TenantContext.wrap((Callable<String>) TenantContext::getRequired);
+            Supplier<String> supplier = TenantContext.wrap((Supplier<String>) TenantContext::get);
+            TenantContext.clear();
+
+            worker.submit(runnable).get();
+            assertEquals("submitter", worker.submit(callable).get());
+            assertEquals("submitter", CompletableFuture.supplyAsync(supplier, worker).get());
+
+            Future<String> after = worker.submit(TenantContext::get);
+            assertEquals("stale", after.get(), "wrapped tasks restore the worker's binding");
+        } finally {
+            worker.shutdownNow();
+        }
+    }
+
+    @Test
+    void propagatingExecutorHandsOverTheTenant() throws Exception {
+        ExecutorService worker = Executors.newSingleThreadExecutor();
+        try {
+            var executor = TenantContext.propagating(worker);
+
+            String seen = TenantContext.callWith("t1",
+                    () -> CompletableFuture.supplyAsync(TenantContext::get, executor).get());
+            assertEquals("t1", seen);
+            assertNull(CompletableFuture.supplyAsync(TenantContext::get, executor).get(),
+                    "nothing bound when the submitter has no tenant");
+            assertNull(worker.submit(TenantContext::get).get(), "worker left unbound");
+        } finally {
+            worker.shutdownNow();
+        }
+    }
+
+    @Test
+    void threadBindingsNestInsideAScopedBinding() {
+        TenantContext.runWith("scoped", () -> {
+            TenantContext.set("thread");
+            assertEquals("thread", TenantContext.get());
+            TenantContext.clear();
+            assertNull(TenantContext.get(), "clear hides the outer binding too");
+        });
+        assertNull(TenantContext.get());
+    }
+
+    @Test
+    void structuredSubtasksInheritTheTenant() throws Exception {
+        assumeTrue(TenantContext.isScoped(), "ScopedValue needs Java 25+ or --enable-preview");
+        assertEquals("forked", TenantContext.callWith("forked", () -> forkAndJoin(TenantContext::get)));
+    }
+
+    /* ——— helpers ——— */
+
+    /** Runs {@code task} as a StructuredTaskScope subtask – reflectively, it is a preview API. */
+    private static Object forkAndJoin(Callable<?> task) throws Exception {
+        Class<?> sts = Class.forName("java.util.concurrent.StructuredTaskScope");
+        Object scope;
+        try {
+            scope = sts.getConstructor().newInstance();               // Java 21–24
+        } catch (NoSuchMethodException ex) {
+            scope = sts.getMethod("open").invoke(null);              // Java 25+
+        }
+        try (AutoCloseable ignored = (AutoCloseable) scope) {
+            Object subtask = sts.getMethod("fork", Callable.class).invoke(scope, task);
+            sts.getMethod("join").invoke(scope);
+            return Class.forName("java.util.concurrent.StructuredTaskScope$Subtask").getMethod("get").invoke(subtask);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package org.zakariafarih.multitenancytest;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+import org.zakariafarih.multitenancycore.MultitenancyRegistryProperties;
+import org.zakariafarih.multitenancycore.TenantDescriptorLoader;
+import org.zakariafarih.multitenancycore.TenantProperties;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Descriptor files are stream-parsed; aliases and merge keys must still load
+ * as they did with a document load, and the binary snapshot must be used
+ * only while the files it was written from are unchanged.
+ */
+class TenantDescriptorLoaderTest {
+
+    @TempDir Path dir;
+
+    @Test
+    void aliasesAndMergeKeysAreResolved() throws IOException {
+        Path file = write("tenants-alias.yml", """
+                tenants:
+                  - &base
+                    id: alpha
+                    host: &pg db.internal
+                    port: 5433
+                    maxPool: 7
+                  - <<: *base
+                    id: beta
+                  - id: gamma
+                    host: *pg
+                """);
+
+        var tenants = TenantDescriptorLoader.parse(new FileSystemResource(file));
+
+        assertEquals(List.of("alpha", "beta", "gamma"), tenants.stream().map(TenantProperties.TenantConfig::getId).toList());
+        assertEquals("db.internal", tenants.get(1).getHost());
+        assertEquals(5433, tenants.get(1).getPort());
+        assertEquals(7, tenants.get(1).getMaxPool());
+        assertEquals("db.internal", tenants.get(2).getHost());
+        assertEquals(5432, tenants.get(2).getPort(), "gamma keeps the default port");
+    }
+
+    @Test
+    void plainFilesSkipOtherTopLevelKeys() throws IOException {
+        Path file = write("tenants-plain.yml", """
+                owner: { team: clinic, tags: [a, b] }
+                tenants:
+                  - id: one
+                    dbName: one_db
+                    priority: 3
+                  - id: two
+                    dbPassword: ~
+                """);
+
+        var tenants = TenantDescriptorLoader.parse(new FileSystemResource(file));
+
+        assertEquals(2, tenants.size());
+        assertEquals("one_db", tenants.get(0).getDbName());
+        assertEquals(3, tenants.get(0).getPriority());
+        assertNull(tenants.get(1).getDbPassword());
+    }
+
+    @Test
+    void snapshotIsReadUntilADescriptorChanges() throws IOException {
+        Path file = write("tenants-a.yml", """
+                tenants:
+                  - id: first
+                    dbUser: app
+                    idleTimeoutMs: 60000
+                """);
+        Path snapshot = dir.resolve("snap/tenants.bin");
+        var loader = loader(snapshot);
+
+        List<TenantProperties.TenantConfig> parsed = loader.load();
+        assertTrue(Files.isRegularFile(snapshot), "snapshot written on first load");
+
+        /* same size and modification time, unparseable content: only the snapshot can answer */
+        FileTime mtime = Files.getLastModifiedTime(file);
+        Files.writeString(file, "x".repeat((int) Files.size(file)));
+        Files.setLastModifiedTime(file, mtime);
+        assertEquals(parsed, loader.load(), "round-trip through the snapshot");
+
+        /* a changed file makes the snapshot stale: re-parse and rewrite it */
+        Files.writeString(file, """
+                tenants:
+                  - id: first
+                  - id: second
+                """);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(mtime.toMillis() + 5_000));
+        var reloaded = loader.load();
+        assertEquals(List.of("first", "second"), reloaded.stream().map(TenantProperties.TenantConfig::getId).toList());
+        assertEquals(reloaded, loader(snapshot).load(), "rebuilt snapshot matches the new files");
+    }
+
+    /* ——— helpers ——— */
+
+    private TenantDescriptorLoader loader(Path snapshot) {
+        var props = new MultitenancyRegistryProperties();
+        props.setDescriptors("file:" + dir.toAbsolutePath() + "/tenants-*.yml");
+        props.setSnapshotFile(snapshot);
+        return new TenantDescriptorLoader(props);
+    }
+
+    private Path write(String name, String yaml) throws IOException {
+        return Files.writeString(dir.resolve(name), yaml);
+    }
+}
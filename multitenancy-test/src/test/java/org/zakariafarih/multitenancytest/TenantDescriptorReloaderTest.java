@@ -0,0 +1,169 @@
+package org.zakariafarih.multitenancytest;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.zakariafarih.multitenancycore.*;
+import org.zakariafarih.multitenancyrouting.TenantDataSourceManager;
+import org.zakariafarih.multitenancyrouting.TenantDescriptorReloader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * A reload diffs the descriptor files against the previous load: added
+ * tenants are queued for bootstrap, removed ones unregistered – and dropped
+ * from the bootstrap queue if they never left it – and only tenants whose
+ * pool settings changed get their pool swapped.
+ */
+class TenantDescriptorReloaderTest {
+
+    private static final String[] SCHEMAS = { "audit" };
+
+    @TempDir Path dir;
+
+    private final HikariDataSource    admin   = adminDataSource();
+    private final BlockingCreator     creator = new BlockingCreator(admin);
+    private final SimpleMeterRegistry meters  = new SimpleMeterRegistry();
+
+    private TenantDataSourceManager dsm;
+    private TenantBootstrapper      bootstrapper;
+
+    @AfterEach
+    void tearDown() {
+        creator.release.countDown();
+        if (bootstrapper != null) bootstrapper.destroy();
+        if (dsm != null) dsm.destroy();
+        creator.close();
+        admin.close();
+    }
+
+    @Test
+    void reconcilesOnlyTheDiffAndCancelsQueuedRemovals() throws Exception {
+        write("""
+                tenants:
+                  - id: reload_keep
+                  - id: reload_resized
+                    maxPool: 5
+                  - id: reload_prio
+                  - id: reload_gone
+                """);
+        var loader   = loader();
+        var registry = new MapTenantRegistry(loader.load());
+        var schemaGen = new SchemaGenerator(new MultitenancyFlywayProperties());
+        var props = new MultitenancyProps();
+        props.setSchemas(SCHEMAS);
+        dsm = new TenantDataSourceManager(registry, new MultitenancyPoolProperties(), props,
+                new MultitenancyMonitoringProperties(), schemaGen);
+        var bootstrap = new MultitenancyBootstrapProperties();
+        bootstrap.setParallelism(1);
+        bootstrap.setMode(MultitenancyBootstrapProperties.Mode.DEFERRED);
+        bootstrap.setReadyWait(Duration.ofSeconds(30));
+        bootstrapper = new TenantBootstrapper(registry, creator, dsm::get, schemaGen, SCHEMAS,
+                mock(TenantAuditLogger.class), bootstrap, meters);
+        var reloader = new TenantDescriptorReloader(registry, loader, dsm, schemaGen.getLedger(),
+                bootstrapper, new MultitenancyRegistryProperties());
+
+        var keep    = dsm.get("reload_keep");
+        var prio    = dsm.get("reload_prio");
+        dsm.get("reload_resized");
+        dsm.get("reload_gone");
+
+        write("""
+                tenants:
+                  - id: reload_keep
+                  - id: reload_resized
+                    maxPool: 9
+                  - id: reload_prio
+                    priority: 3
+                  - id: reload_running
+                  - id: reload_queued
+                """);
+        var first = reloader.reload();
+        assertEquals(List.of("reload_running", "reload_queued"), first.added());
+        assertEquals(List.of("reload_gone"), first.removed());
+        assertEquals(List.of("reload_resized", "reload_prio"), first.changed());
+        assertEquals(1, first.unchanged());
+
+        assertFalse(registry.contains("reload_gone"));
+        assertFalse(dsm.isCached("reload_gone"), "removed tenant's pool retired");
+        assertFalse(dsm.isCached("reload_resized"), "new pool settings – pool swapped");
+        assertEquals(9, registry.get("reload_resized").getMaxPool());
+        assertSame(prio, dsm.get("reload_prio"), "a priority change keeps the pool");
+        assertSame(keep, dsm.get("reload_keep"));
+
+        /* the single worker is busy with reload_running, reload_queued waits behind it */
+        assertTrue(creator.started.await(10, TimeUnit.SECONDS));
+        write("""
+                tenants:
+                  - id: reload_keep
+                  - id: reload_resized
+                    maxPool: 9
+                  - id: reload_prio
+                    priority: 3
+                  - id: reload_running
+                """);
+        var second = reloader.reload();
+        assertEquals(List.of("reload_queued"), second.removed());
+        assertEquals(4, second.unchanged());
+        assertEquals(1, meters.get("tenant.bootstrap.total").gauge().value(), "dropped from the queue at once");
+
+        creator.release.countDown();
+        assertTrue(bootstrapper.awaitReady("reload_running"));
+        assertTrue(bootstrapper.awaitReady("reload_queued"), "cancelled – nothing to wait for");
+        assertEquals(List.of("reload_running"), creator.created, "a removed tenant is never bootstrapped");
+        assertTrue(dsm.isCached("reload_running"));
+        assertFalse(dsm.isCached("reload_queued"));
+    }
+
+    /* ——— helpers ——— */
+
+    /** Records which tenants get a database; the first one waits for {@link #release}. */
+    private static final class BlockingCreator extends TenantDatabaseCreator {
+        final List<String>   created = new CopyOnWriteArrayList<>();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        BlockingCreator(HikariDataSource admin) { super(admin, "sa", "", new MultitenancyPoolProperties()); }
+
+        @Override
+        public void createDatabaseAndSchemaIfNotExists(TenantProperties.TenantConfig cfg, String[] schemas) {
+            created.add(cfg.getId());
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            super.createDatabaseAndSchemaIfNotExists(cfg, schemas);
+        }
+    }
+
+    private TenantDescriptorLoader loader() {
+        var props = new MultitenancyRegistryProperties();
+        props.setDescriptors("file:" + dir.toAbsolutePath() + "/tenants-*.yml");
+        return new TenantDescriptorLoader(props);
+    }
+
+    private void write(String yaml) throws IOException {
+        Files.writeString(dir.resolve("tenants-reload.yml"), yaml);
+    }
+
+    private static HikariDataSource adminDataSource() {
+        var ds = new HikariDataSource();
+        ds.setJdbcUrl("jdbc:h2:mem:reload_admin;DB_CLOSE_DELAY=-1");
+        ds.setUsername("sa");
+        return ds;
+    }
+}
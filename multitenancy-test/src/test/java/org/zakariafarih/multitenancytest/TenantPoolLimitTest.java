@@ -0,0 +1,58 @@
+package org.zakariafarih.multitenancytest;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.zakariafarih.multitenancycore.*;
+import org.zakariafarih.multitenancyrouting.TenantDataSourceManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@code maxTenantPools} bounds the number of open pools even though the
+ * cache itself is bounded by weight, where a pool without EMFs weighs 1.
+ */
+class TenantPoolLimitTest {
+
+    private TenantDataSourceManager dsm;
+
+    @AfterEach
+    void tearDown() {
+        if (dsm != null) dsm.destroy();
+    }
+
+    @Test
+    void poolsBeyondTheLimitAreClosed() throws InterruptedException {
+        List<TenantProperties.TenantConfig> tenants = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            var cfg = new TenantProperties.TenantConfig();
+            cfg.setId("limit_" + i);
+            tenants.add(cfg);
+        }
+        var pool = new MultitenancyPoolProperties();
+        pool.setMaxTenantPools(2);
+        pool.setDrainTimeout(Duration.ZERO);
+        var props = new MultitenancyProps();
+        props.setSchemas(new String[]{ "audit" });
+        dsm = new TenantDataSourceManager(new MapTenantRegistry(tenants), pool, props,
+                new MultitenancyMonitoringProperties(), new SchemaGenerator(new MultitenancyFlywayProperties()));
+        assertEquals(10, pool.effectiveMaxTenantWeight(), "the weight bound alone would keep all five");
+
+        List<HikariDataSource> built = new ArrayList<>();
+        for (var cfg : tenants) built.add((HikariDataSource) dsm.get(cfg.getId()));
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (dsm.livePools().size() > 2 && System.currentTimeMillis() < deadline) Thread.sleep(20);
+        assertEquals(2, dsm.livePools().size());
+        assertTrue(dsm.isCached("limit_4"), "the pool just built is spared");
+
+        while (built.stream().filter(ds -> !ds.isClosed()).count() > 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(2, built.stream().filter(ds -> !ds.isClosed()).count(), "evicted pools are closed");
+    }
+}
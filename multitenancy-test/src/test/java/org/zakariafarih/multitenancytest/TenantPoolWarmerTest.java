@@ -0,0 +1,105 @@
+package org.zakariafarih.multitenancytest;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.zakariafarih.multitenancycore.*;
+import org.zakariafarih.multitenancyrouting.TenantDataSourceManager;
+import org.zakariafarih.multitenancyrouting.TenantPoolWarmer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A warm tenant is rebuilt after a size eviction – once per refresh period –
+ * but an idle one is let go, so warm tenants neither live forever nor
+ * evict each other in a loop.
+ */
+class TenantPoolWarmerTest {
+
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+
+    @TempDir Path dir;
+
+    private TenantDataSourceManager dsm;
+    private TenantPoolWarmer        warmer;
+
+    @AfterEach
+    void tearDown() {
+        if (warmer != null) warmer.destroy();
+        if (dsm != null) dsm.destroy();
+    }
+
+    @Test
+    void idleWarmTenantLeavesTheWarmSet() throws Exception {
+        var pool = new MultitenancyPoolProperties();
+        pool.setIdleEviction(Duration.ofMillis(300));
+        start(pool);
+
+        Thread.sleep(500);
+        dsm.get("warm_b");                                    // cache maintenance expires warm_a
+
+        await(() -> warmSetSize() == 0);
+        assertFalse(dsm.isCached("warm_a"), "not rebuilt after idling out");
+    }
+
+    @Test
+    void warmTenantEvictedForSizeIsRewarmedOnce() throws Exception {
+        var pool = new MultitenancyPoolProperties();
+        pool.setMaxTenantPools(1);
+        start(pool);
+
+        dsm.get("warm_b");                                    // evicts warm_a for size …
+        await(() -> dsm.isCached("warm_a") && !dsm.isCached("warm_b"));
+        assertEquals(1, warmSetSize(), "… which is re-warmed and evicts warm_b in turn");
+
+        dsm.get("warm_b");                                    // second size eviction before a refresh
+        await(() -> warmSetSize() == 0);
+        Thread.sleep(200);
+        assertTrue(dsm.isCached("warm_b"));
+        assertFalse(dsm.isCached("warm_a"), "no second re-warm");
+    }
+
+    /* ——— helpers ——— */
+
+    private void start(MultitenancyPoolProperties pool) throws IOException, InterruptedException {
+        pool.setWarmSetFile(Files.writeString(dir.resolve("warm-set"), "warm_a\n").toString());
+        pool.setWarmSetSize(1);
+        pool.setWarmSetRefresh(Duration.ofHours(1));
+        pool.setDrainTimeout(Duration.ZERO);
+        var props = new MultitenancyProps();
+        props.setSchemas(new String[]{ "audit" });
+        var registry = new MapTenantRegistry(List.of(tenant("warm_a"), tenant("warm_b")));
+        dsm = new TenantDataSourceManager(registry, pool, props, new MultitenancyMonitoringProperties(),
+                new SchemaGenerator(new MultitenancyFlywayProperties()));
+        warmer = new TenantPoolWarmer(dsm, registry, pool, meters);
+        warmer.afterSingletonsInstantiated();
+        await(() -> dsm.isCached("warm_a"));
+        assertEquals(1, warmSetSize());
+    }
+
+    private double warmSetSize() {
+        return meters.get("tenant.pool.warm.set.size").gauge().value();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) fail("condition not reached");
+            Thread.sleep(20);
+        }
+    }
+
+    private static TenantProperties.TenantConfig tenant(String id) {
+        var cfg = new TenantProperties.TenantConfig();
+        cfg.setId(id);
+        return cfg;
+    }
+}
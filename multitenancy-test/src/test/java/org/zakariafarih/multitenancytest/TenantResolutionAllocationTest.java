@@ -0,0 +1,174 @@
+package org.zakariafarih.multitenancytest;
+
+import jakarta.servlet.FilterChain;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.zakariafarih.multitenancycore.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Allocation rate of the per-request tenant resolution pipeline
+ * (skip-list match, path-segment extraction, registry canonicalisation).
+ */
+@Slf4j
+class TenantResolutionAllocationTest {
+
+    private static final int WARMUP = 200_000;
+    private static final int ROUNDS = 200_000;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private TenantRegistry   registry;
+    private TenantIdResolver chain;
+    private TenantFilter     filter;
+
+    @BeforeEach
+    void setUp() {
+        registry = new MapTenantRegistry();
+        for (int i = 0; i < 100; i++) {
+            var cfg = new TenantProperties.TenantConfig();
+            cfg.setId("alloc_" + i);
+            registry.register(cfg);
+        }
+        chain = new ChainedTenantIdResolver(List.of(
+                new HeaderPathTenantIdResolver(registry),
+                new QueryParamTenantIdResolver(),
+                new CookieTenantIdResolver()), registry);
+        var resolution = new MultitenancyResolutionProperties();
+        filter = new TenantFilter(chain, registry, resolution,
+                new UnknownTenantGuard(resolution, new SimpleMeterRegistry()),
+                new StaticListableBeanFactory().getBeanProvider(TenantBootstrapper.class));
+    }
+
+    @Test
+    void pathResolutionReturnsCanonicalIdWithoutAllocating() {
+        var req = new FixedHeaderRequest("/tenants/alloc_42/patients", null);
+
+        assertSame(registry.canonicalId("alloc_42"), chain.resolveTenantId(req));
+        assertBytesPerOp(8, () -> chain.resolveTenantId(req));
+    }
+
+    @Test
+    void headerResolutionReturnsCanonicalIdWithoutAllocating() {
+        var req = new FixedHeaderRequest("/patients", new String("alloc_7"));
+
+        assertSame(registry.canonicalId("alloc_7"), chain.resolveTenantId(req));
+        assertBytesPerOp(8, () -> chain.resolveTenantId(req));
+    }
+
+    @Test
+    void skippedPathDoesNotAllocate() {
+        var req = new FixedHeaderRequest("/actuator/health", null);
+        var rsp = new MockHttpServletResponse();
+        FilterChain next = (rq, rs) -> { };
+
+        assertBytesPerOp(8, () -> filter.doFilter(req, rsp, next));
+    }
+
+    @Test
+    void unknownPathTenantIsStillResolved() {
+        var req = new FixedHeaderRequest("/tenants/nobody/patients", null);
+        assertEquals("nobody", chain.resolveTenantId(req));
+        assertNull(chain.resolveTenantId(new FixedHeaderRequest("/tenants/", null)));
+    }
+
+    @Test
+    void unknownTenantIsRejectedBeforeRouting() throws Exception {
+        var rsp = new MockHttpServletResponse();
+        boolean[] reached = { false };
+
+        filter.doFilter(new FixedHeaderRequest("/patients", "ghost"), rsp, (rq, rs) -> reached[0] = true);
+        assertEquals(404, rsp.getStatus());
+        assertFalse(reached[0]);
+
+        var ok = new MockHttpServletResponse();
+        filter.doFilter(new FixedHeaderRequest("/patients", "alloc_1"), ok, (rq, rs) -> reached[0] = true);
+        assertEquals(200, ok.getStatus());
+        assertTrue(reached[0]);
+    }
+
+    @Test
+    void hammeredUnknownTenantIsThrottled() throws Exception {
+        int limit = new MultitenancyResolutionProperties().getUnknownRateLimit();
+        FilterChain next = (rq, rs) -> fail("unknown tenant reached the chain");
+
+        for (int i = 0; i < limit; i++) {
+            var rsp = new MockHttpServletResponse();
+            filter.doFilter(new FixedHeaderRequest("/patients", "decommissioned"), rsp, next);
+            assertEquals(404, rsp.getStatus());
+        }
+        var rsp = new MockHttpServletResponse();
+        filter.doFilter(new FixedHeaderRequest("/patients", "decommissioned"), rsp, next);
+        assertEquals(429, rsp.getStatus());
+        assertNotNull(rsp.getHeader("Retry-After"));
+
+        assertThrows(UnknownTenantException.class, () -> registry.get("decommissioned"));
+    }
+
+    @Test
+    void tenantErrorsAreStacklessOnlyInsideTheFilter() throws Exception {
+        var outside = assertThrows(TenantNotResolvedException.class, TenantContext::getRequired);
+        assertTrue(outside.getStackTrace().length > 0);
+        assertTrue(assertThrows(UnknownTenantException.class, () -> registry.get("x")).getStackTrace().length > 0);
+
+        RuntimeException[] inside = new RuntimeException[2];
+        filter.doFilter(new FixedHeaderRequest("/patients", null), new MockHttpServletResponse(), (rq, rs) -> {
+            inside[0] = assertThrows(TenantNotResolvedException.class, TenantContext::getRequired);
+            inside[1] = assertThrows(UnknownTenantException.class, () -> registry.get("x"));
+        });
+        assertEquals(0, inside[0].getStackTrace().length);
+        assertEquals(0, inside[1].getStackTrace().length);
+        assertTrue(assertThrows(TenantNotResolvedException.class, TenantContext::getRequired)
+                .getStackTrace().length > 0, "marker cleared after the request");
+    }
+
+    /* ——— helpers ——— */
+
+    @FunctionalInterface
+    private interface Op { void run() throws Exception; }
+
+    private static void assertBytesPerOp(long limit, Op op) {
+        try {
+            for (int i = 0; i < WARMUP; i++) op.run();
+            long before = THREADS.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < ROUNDS; i++) op.run();
+            long perOp = (THREADS.getCurrentThreadAllocatedBytes() - before) / ROUNDS;
+
+            log.info("⇢ {} bytes/op", perOp);
+            assertTrue(perOp <= limit, "allocated " + perOp + " bytes/op, limit " + limit);
+        } catch (Exception ex) {
+            throw new AssertionError(ex);
+        }
+    }
+
+    /**
+     * MockHttpServletRequest resolves headers through a case-insensitive map
+     * that lower-cases the name on every call – keep that out of the numbers.
+     */
+    private static final class FixedHeaderRequest extends MockHttpServletRequest {
+        private final String tenantHeader;
+
+        FixedHeaderRequest(String uri, String tenantHeader) {
+            super("GET", uri);
+            this.tenantHeader = tenantHeader;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return "X-Tenant".equalsIgnoreCase(name) ? tenantHeader : null;
+        }
+
+        @Override
+        public String getParameter(String name) { return null; }
+    }
+}